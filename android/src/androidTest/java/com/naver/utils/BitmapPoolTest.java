@@ -0,0 +1,102 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolTest {
+
+    private static final int OUTPUT_SIZE = 64;
+
+    @Before
+    public void clearPool() {
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void pooledJpegKeepsTransparencyOfPngOutput() throws Exception {
+        final Bitmap jpegImage = decode(encode(newImage(OUTPUT_SIZE, 0xFF3080C0, 0xFF3080C0), Bitmap.CompressFormat.JPEG));
+        assertTrue(jpegImage.isMutable());
+        BitmapPool.getInstance().put(jpegImage);
+
+        // left half opaque red, right half fully transparent
+        final Bitmap pngImage = decode(encode(newImage(OUTPUT_SIZE * 2, 0xFFFF0000, Color.TRANSPARENT), Bitmap.CompressFormat.PNG));
+        final long hitCount = BitmapPool.getInstance().getHitCount();
+
+        final Bitmap targetImage = new ImagePipeline().addStage(ImagePipeline.scale(OUTPUT_SIZE, OUTPUT_SIZE)).render(pngImage);
+        assertEquals("the output must reuse the pooled JPEG", hitCount + 1, BitmapPool.getInstance().getHitCount());
+        assertTrue(targetImage.hasAlpha());
+
+        final Bitmap encodedImage = decode(encode(targetImage, Bitmap.CompressFormat.PNG));
+        assertEquals(0xFF, Color.alpha(encodedImage.getPixel(4, OUTPUT_SIZE / 2)));
+        assertEquals(0, Color.alpha(encodedImage.getPixel(OUTPUT_SIZE - 4, OUTPUT_SIZE / 2)));
+    }
+
+    @Test
+    public void getClearsToTransparent() {
+        BitmapPool.getInstance().put(decode(encode(newImage(OUTPUT_SIZE, Color.WHITE, Color.WHITE), Bitmap.CompressFormat.JPEG)));
+
+        final Bitmap bitmap = BitmapPool.getInstance().get(OUTPUT_SIZE, OUTPUT_SIZE, Bitmap.Config.ARGB_8888);
+        assertTrue(bitmap.hasAlpha());
+        assertEquals(Color.TRANSPARENT, bitmap.getPixel(OUTPUT_SIZE / 2, OUTPUT_SIZE / 2));
+    }
+
+    private static Bitmap newImage(final int size, final int leftColor, final int rightColor) {
+        final int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                pixels[y * size + x] = x < size / 2 ? leftColor : rightColor;
+            }
+        }
+        Bitmap image = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        image.setPixels(pixels, 0, size, 0, 0, size, size);
+        return image;
+    }
+
+    private static byte[] encode(final Bitmap image, final Bitmap.CompressFormat compressFormat) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        image.compress(compressFormat, 100, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static Bitmap decode(final byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+}
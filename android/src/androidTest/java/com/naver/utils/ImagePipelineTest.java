@@ -0,0 +1,161 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the single draw of ImagePipeline with the former resize, grayscale and copy steps,
+ * and counts the bitmaps each of them takes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImagePipelineTest {
+
+    private static final int SOURCE_WIDTH = 640;
+    private static final int SOURCE_HEIGHT = 480;
+
+    // bilinear sampling before or after the color filter rounds differently
+    private static final int MAX_CHANNEL_DIFFERENCE = 2;
+
+    @Before
+    public void clearPool() {
+        BitmapPool.getInstance().clear();
+    }
+
+    @Test
+    public void resizeMatchesMultiStepPath() throws Exception {
+        assertSimilar(renderMultiStep(newSourceImage(), 320, 240, false),
+                new ImagePipeline().addStage(ImagePipeline.scale(320, 240)).render(newSourceImage()));
+    }
+
+    @Test
+    public void resizeAndGrayscaleMatchesMultiStepPath() throws Exception {
+        assertSimilar(renderMultiStep(newSourceImage(), 213, 160, true),
+                new ImagePipeline().addStage(ImagePipeline.scale(213, 160)).addStage(ImagePipeline.grayscale()).render(newSourceImage()));
+    }
+
+    @Test
+    public void grayscaleOnlyMatchesMultiStepPath() throws Exception {
+        assertSimilar(renderMultiStep(newSourceImage(), SOURCE_WIDTH, SOURCE_HEIGHT, true),
+                new ImagePipeline().addStage(ImagePipeline.grayscale()).render(newSourceImage()));
+    }
+
+    @Test
+    public void resizeAndGrayscaleTakesOneBitmap() throws Exception {
+        final Bitmap sourceImage = newSourceImage();
+        final long before = getPoolRequestCount();
+
+        final Bitmap targetImage = new ImagePipeline()
+                .addStage(ImagePipeline.scale(320, 240)).addStage(ImagePipeline.grayscale()).render(sourceImage);
+
+        assertEquals(1, getPoolRequestCount() - before);
+        assertEquals(320, targetImage.getWidth());
+        assertEquals(240, targetImage.getHeight());
+    }
+
+    @Test
+    public void identityTakesNoBitmap() throws Exception {
+        final Bitmap sourceImage = newSourceImage();
+        final long before = getPoolRequestCount();
+
+        assertSame(sourceImage, new ImagePipeline().render(sourceImage));
+        assertEquals(0, getPoolRequestCount() - before);
+    }
+
+    private static long getPoolRequestCount() {
+        return BitmapPool.getInstance().getHitCount() + BitmapPool.getInstance().getMissCount();
+    }
+
+    /**
+     * Smooth gradients with a few hard edges, so both paths sample comparable neighbourhoods.
+     */
+    private static Bitmap newSourceImage() {
+        final int[] pixels = new int[SOURCE_WIDTH * SOURCE_HEIGHT];
+        for (int y = 0; y < SOURCE_HEIGHT; y++) {
+            for (int x = 0; x < SOURCE_WIDTH; x++) {
+                final int red = x * 255 / (SOURCE_WIDTH - 1);
+                final int green = y * 255 / (SOURCE_HEIGHT - 1);
+                final int blue = ((x / 80 + y / 80) % 2 == 0) ? 40 : 220;
+                pixels[y * SOURCE_WIDTH + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+        Bitmap sourceImage = Bitmap.createBitmap(SOURCE_WIDTH, SOURCE_HEIGHT, Bitmap.Config.ARGB_8888);
+        sourceImage.setPixels(pixels, 0, SOURCE_WIDTH, 0, 0, SOURCE_WIDTH, SOURCE_HEIGHT);
+        return sourceImage;
+    }
+
+    /**
+     * The steps imageModifier took before ImagePipeline: a scaled bitmap, a grayscale bitmap and a copy for encoding.
+     */
+    private static Bitmap renderMultiStep(final Bitmap sourceImage, final int width, final int height, final boolean isGrayscale) {
+        Bitmap resizeImage = null;
+        if (width != sourceImage.getWidth() || height != sourceImage.getHeight()) {
+            resizeImage = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            new Canvas(resizeImage).drawBitmap(sourceImage, new Rect(0, 0, sourceImage.getWidth(), sourceImage.getHeight()),
+                    new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+        }
+
+        Bitmap grayscaleImage = null;
+        if (isGrayscale) {
+            final Bitmap image = resizeImage != null ? resizeImage : sourceImage;
+            grayscaleImage = Bitmap.createBitmap(image.getWidth(), image.getHeight(), Bitmap.Config.ARGB_8888);
+            Paint paint = new Paint();
+            paint.setColorFilter(new ColorMatrixColorFilter(ImageModifierUtil.GRAYSCALE_MATRIX));
+            new Canvas(grayscaleImage).drawBitmap(image, 0, 0, paint);
+        }
+
+        return Bitmap.createBitmap(grayscaleImage != null ? grayscaleImage : (resizeImage != null ? resizeImage : sourceImage));
+    }
+
+    private static void assertSimilar(final Bitmap expected, final Bitmap actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+
+        final int[] expectedPixels = new int[expected.getWidth() * expected.getHeight()];
+        final int[] actualPixels = new int[expectedPixels.length];
+        expected.getPixels(expectedPixels, 0, expected.getWidth(), 0, 0, expected.getWidth(), expected.getHeight());
+        actual.getPixels(actualPixels, 0, actual.getWidth(), 0, 0, actual.getWidth(), actual.getHeight());
+
+        for (int i = 0; i < expectedPixels.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                final int difference = Math.abs(((expectedPixels[i] >>> shift) & 0xFF) - ((actualPixels[i] >>> shift) & 0xFF));
+                assertTrue("pixel " + i + " differs by " + difference, difference <= MAX_CHANNEL_DIFFERENCE);
+            }
+        }
+    }
+}
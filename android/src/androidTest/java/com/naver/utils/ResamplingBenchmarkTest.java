@@ -0,0 +1,159 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Time and PSNR of every ImagePipeline.Resampling mode on a fixed synthetic image set, printed to logcat
+ * under the ResamplingBenchmark tag. The reference is an exact box filter, so reductions are integer factors.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResamplingBenchmarkTest {
+
+    private static final String TAG = "ResamplingBenchmark";
+
+    private static final int SOURCE_WIDTH = 2400;
+    private static final int SOURCE_HEIGHT = 1600;
+    private static final int[] REDUCTIONS = {2, 4, 10};
+    private static final int RUN_COUNT = 7;
+
+    @Test
+    public void compareResamplingModes() throws Exception {
+        final String[] imageNames = {"zonePlate", "gradientEdges"};
+        for (String imageName : imageNames) {
+            final int[] sourcePixels = "zonePlate".equals(imageName) ? newZonePlate() : newGradientEdges();
+            final Bitmap sourceImage = Bitmap.createBitmap(SOURCE_WIDTH, SOURCE_HEIGHT, Bitmap.Config.ARGB_8888);
+            sourceImage.setPixels(sourcePixels, 0, SOURCE_WIDTH, 0, 0, SOURCE_WIDTH, SOURCE_HEIGHT);
+
+            for (int reduction : REDUCTIONS) {
+                final int width = SOURCE_WIDTH / reduction;
+                final int height = SOURCE_HEIGHT / reduction;
+                final int[] referencePixels = boxFilter(sourcePixels, reduction);
+
+                for (ImagePipeline.Resampling resampling : ImagePipeline.Resampling.values()) {
+                    final long[] runNanos = new long[RUN_COUNT];
+                    double psnr = 0;
+                    for (int run = 0; run < RUN_COUNT; run++) {
+                        final long start = System.nanoTime();
+                        final Bitmap targetImage = new ImagePipeline().setResampling(resampling)
+                                .addStage(ImagePipeline.scale(width, height)).render(sourceImage);
+                        runNanos[run] = System.nanoTime() - start;
+
+                        if (run == 0) {
+                            final int[] targetPixels = new int[width * height];
+                            targetImage.getPixels(targetPixels, 0, width, 0, 0, width, height);
+                            psnr = getPsnr(referencePixels, targetPixels);
+                        }
+                        BitmapPool.getInstance().put(targetImage);
+                    }
+
+                    Arrays.sort(runNanos);
+                    Log.i(TAG, String.format("%s 1/%d %s: median %.2f ms, PSNR %.2f dB",
+                            imageName, reduction, resampling.name().toLowerCase(), runNanos[RUN_COUNT / 2] / 1e6, psnr));
+                    assertTrue(psnr > 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Concentric rings whose frequency rises towards the edges, aliasing shows up as moire.
+     */
+    private static int[] newZonePlate() {
+        final int[] pixels = new int[SOURCE_WIDTH * SOURCE_HEIGHT];
+        final double scale = Math.PI / (2.0 * Math.max(SOURCE_WIDTH, SOURCE_HEIGHT));
+        for (int y = 0; y < SOURCE_HEIGHT; y++) {
+            for (int x = 0; x < SOURCE_WIDTH; x++) {
+                final double dx = x - SOURCE_WIDTH / 2.0;
+                final double dy = y - SOURCE_HEIGHT / 2.0;
+                final int value = (int)Math.round(127.5 + 127.5 * Math.cos((dx * dx + dy * dy) * scale));
+                pixels[y * SOURCE_WIDTH + x] = 0xFF000000 | (value << 16) | (value << 8) | value;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Photo-like smooth areas with hard edges every 150 pixels.
+     */
+    private static int[] newGradientEdges() {
+        final int[] pixels = new int[SOURCE_WIDTH * SOURCE_HEIGHT];
+        for (int y = 0; y < SOURCE_HEIGHT; y++) {
+            for (int x = 0; x < SOURCE_WIDTH; x++) {
+                final int red = x * 255 / (SOURCE_WIDTH - 1);
+                final int green = y * 255 / (SOURCE_HEIGHT - 1);
+                final int blue = ((x / 150 + y / 150) % 2 == 0) ? 30 : 225;
+                pixels[y * SOURCE_WIDTH + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] boxFilter(final int[] pixels, final int reduction) {
+        final int width = SOURCE_WIDTH / reduction;
+        final int height = SOURCE_HEIGHT / reduction;
+        final int area = reduction * reduction;
+        final int[] result = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                for (int sy = y * reduction; sy < (y + 1) * reduction; sy++) {
+                    for (int sx = x * reduction; sx < (x + 1) * reduction; sx++) {
+                        final int color = pixels[sy * SOURCE_WIDTH + sx];
+                        red += (color >> 16) & 0xFF;
+                        green += (color >> 8) & 0xFF;
+                        blue += color & 0xFF;
+                    }
+                }
+                result[y * width + x] = 0xFF000000 | ((red + area / 2) / area << 16) | ((green + area / 2) / area << 8) | ((blue + area / 2) / area);
+            }
+        }
+        return result;
+    }
+
+    private static double getPsnr(final int[] expected, final int[] actual) {
+        double squaredError = 0;
+        for (int i = 0; i < expected.length; i++) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                final int difference = ((expected[i] >> shift) & 0xFF) - ((actual[i] >> shift) & 0xFF);
+                squaredError += difference * difference;
+            }
+        }
+        final double meanSquaredError = squaredError / (expected.length * 3.0);
+        return meanSquaredError == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / meanSquaredError);
+    }
+}
@@ -25,48 +25,228 @@ package com.naver.rn;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
 import android.net.Uri;
+import android.util.Base64;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.naver.utils.BitmapPool;
+import com.naver.utils.ChunkedOutputStream;
 import com.naver.utils.EXIFUtils;
 import com.naver.utils.ImageModifierUtil;
+import com.naver.utils.GrayscaleImage;
+import com.naver.utils.ImageJob;
+import com.naver.utils.ImageMetrics;
+import com.naver.utils.ImagePipeline;
+import com.naver.utils.ImageSource;
+import com.naver.utils.ImageWorkerPool;
+import com.naver.utils.MemoryGovernor;
+import com.naver.utils.OutputStore;
+import com.naver.utils.RenditionSet;
+import com.naver.utils.ResultCache;
+import com.naver.utils.SourceBitmapCache;
 import com.naver.utils.StringUtils;
+import com.naver.utils.TargetSizeEncoder;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class RNImageModifierModule extends ReactContextBaseJavaModule {
 
   private final Context reactContext;
 
+  private final ImageWorkerPool workerPool = new ImageWorkerPool();
+
+  private volatile long tiledThresholdBytes = DEFAULT_TILED_THRESHOLD_BYTES;
+  private volatile long tileBytes = DEFAULT_TILE_BYTES;
+  private volatile long kernelMinPixels = DEFAULT_KERNEL_MIN_PIXELS;
+
+  private static final AtomicInteger BATCH_ID_GENERATOR = new AtomicInteger(0);
+  private static final AtomicInteger REQUEST_ID_GENERATOR = new AtomicInteger(0);
+  private static final AtomicInteger JOB_ID_GENERATOR = new AtomicInteger(0);
+
+  // jobs from submission until their response, by job id
+  private final Map<String, ImageJob> jobs = new ConcurrentHashMap<>();
+
   private static final String SUCCESS_KEY = "success";
   private static final String ERROR_MESSAGE_KEY = "errorMsg";
   private static final String IMAGE_URI_KEY = "imageURI";
   private static final String BASE64_STRING_KEY = "base64String";
   private static final String EXIF_KEY = "exif";
+  private static final String ORIGINAL_WIDTH_KEY = "originalWidth";
+  private static final String ORIGINAL_HEIGHT_KEY = "originalHeight";
+  private static final String DECODE_WIDTH_KEY = "decodeWidth";
+  private static final String DECODE_HEIGHT_KEY = "decodeHeight";
+  private static final String SAMPLE_SIZE_KEY = "sampleSize";
+  private static final String HIT_COUNT_KEY = "hitCount";
+  private static final String MISS_COUNT_KEY = "missCount";
+  private static final String EVICTION_COUNT_KEY = "evictionCount";
+  private static final String COUNT_KEY = "count";
+  private static final String SIZE_KEY = "size";
+  private static final String MAX_SIZE_KEY = "maxSize";
+  private static final String MAX_COUNT_KEY = "maxCount";
+  private static final String HIT_RATE_KEY = "hitRate";
+  private static final String CACHED_KEY = "cached";
+  private static final String SOURCE_CACHED_KEY = "sourceCached";
+  private static final String TILED_KEY = "tiled";
+  private static final String MEMORY_DOWNSCALE_KEY = "memoryDownscale";
+  private static final String CHUNK_COUNT_KEY = "chunkCount";
+  private static final String DATA_KEY = "data";
+  private static final String REQUEST_COUNT_KEY = "requestCount";
+  private static final String FAILURE_COUNT_KEY = "failureCount";
+  private static final String PEAK_BITMAP_BYTES_KEY = "peakBitmapBytes";
+  private static final String STAGES_KEY = "stages";
+  private static final String BYTES_KEY = "bytes";
+  private static final String MIN_KEY = "min";
+  private static final String MAX_KEY = "max";
+  private static final String MEAN_KEY = "mean";
+  private static final String P50_KEY = "p50";
+  private static final String P95_KEY = "p95";
+  private static final String P99_KEY = "p99";
+  private static final String QUALITY_KEY = "quality";
+  private static final String COMPRESS_ATTEMPTS_KEY = "compressAttempts";
+  private static final String FITS_MAX_BYTES_KEY = "fitsMaxBytes";
+  private static final String BYTE_LENGTH_KEY = "byteLength";
+  private static final String THRESHOLD_BYTES_KEY = "thresholdBytes";
+  private static final String TILE_BYTES_KEY = "tileBytes";
+  private static final String KERNEL_MIN_PIXELS_KEY = "kernelMinPixels";
+  private static final String POLICY_KEY = "policy";
+  private static final String BUDGET_BYTES_KEY = "budgetBytes";
+  private static final String QUEUE_TIMEOUT_MS_KEY = "queueTimeoutMs";
+  private static final String RESERVED_BYTES_KEY = "reservedBytes";
+  private static final String WAITING_COUNT_KEY = "waitingCount";
+  private static final String REJECTED_COUNT_KEY = "rejectedCount";
+  private static final String DOWNSCALED_COUNT_KEY = "downscaledCount";
+  private static final String RESERVATIONS_KEY = "reservations";
+  private static final String AGE_MS_KEY = "ageMs";
+
+  private static final long DEFAULT_TILED_THRESHOLD_BYTES = Runtime.getRuntime().maxMemory() / 4;
+  private static final long DEFAULT_TILE_BYTES = 4L * 1024 * 1024;
+  private static final long DEFAULT_KERNEL_MIN_PIXELS = 1024L * 1024;
+  private static final int DEFAULT_CHUNK_SIZE = 192 * 1024;
+
+  private static final String ERROR_CODE_QUEUE_FULL = "E_QUEUE_FULL";
 
   private static final String ERROR_MESSAGE_EMPTY_URI_KEY = "URI Path KEY('path') must not be null.";
+  private static final String ERROR_MESSAGE_INVALID_ITEM = "batch item must be an object.";
   private static final String ERROR_MESSAGE_EMPTY_URI_VALUE = "URI Path Value must not be null.";
   private static final String ERROR_MESSAGE_FILE_SAVE_FAILED = "File save failed.";
+  private static final String ERROR_MESSAGE_INVALID_COLOR_MATRIX = "colorMatrix must have 20 values.";
+  private static final String ERROR_MESSAGE_INVALID_OUTPUT_PATH = "outputPath must be a writable file path.";
+  private static final String ERROR_MESSAGE_INVALID_POLICY = "policy must be one of 'queue', 'downscale' and 'reject'.";
+  private static final String ERROR_MESSAGE_INVALID_RENDITIONS = "renditions must be a non empty array of { maxEdge } with maxEdge above 0.";
+  private static final String ERROR_MESSAGE_INVALID_FORMAT = "format must be one of 'jpeg', 'png' and 'webp'.";
+  private static final String ERROR_MESSAGE_INVALID_CROP = "crop must have a width and a height inside of the image.";
+  private static final String ERROR_MESSAGE_INVALID_RESIZE_MODE = "resizeMode must be one of 'fast', 'bilinear' and 'quality'.";
+  private static final String ERROR_MESSAGE_INVALID_FIT = "fit must be one of 'contain', 'cover' and 'fill'.";
+  private static final String ERROR_MESSAGE_PREFETCH_OUTPUT = "prefetch renders into the result cache, base64 and outputPath can't be used.";
 
   private static final String PATH_KEY = "path";
   private static final String GRAYSCALE_KEY = "grayscale";
   private static final String BASE64_KEY = "base64";
   private static final String RESIZE_RATIO_KEY = "resizeRatio";
+  private static final String RESIZE_MODE_KEY = "resizeMode";
+  private static final String MAX_WIDTH_KEY = "maxWidth";
+  private static final String MAX_HEIGHT_KEY = "maxHeight";
+  private static final String FIT_KEY = "fit";
   private static final String IMAGE_QUALITY_KEY = "imageQuality";
   private static final String EXTRACT_EXIF_KEY = "extractEXIF";
+  private static final String AUTO_ORIENT_KEY = "autoOrient";
+  private static final String KEEP_EXIF_KEY = "keepExif";
+  private static final String EXIF_FORMAT_KEY = "exifFormat";
+  private static final String CROP_KEY = "crop";
+  private static final String CROP_X_KEY = "x";
+  private static final String CROP_Y_KEY = "y";
+  private static final String CROP_WIDTH_KEY = "width";
+  private static final String CROP_HEIGHT_KEY = "height";
+  private static final String FORMAT_KEY = "format";
+  private static final String MAX_BYTES_KEY = "maxBytes";
+  private static final String ALLOW_DOWNSCALE_KEY = "allowDownscale";
+  private static final String CACHE_KEY = "cache";
+  private static final String TIMINGS_KEY = "timings";
+  private static final String OUTPUT_PATH_KEY = "outputPath";
+  private static final String CHUNKED_KEY = "chunked";
+  private static final String CHUNK_SIZE_KEY = "chunkSize";
+  private static final String REQUEST_ID_KEY = "requestId";
+  private static final String JOB_ID_KEY = "jobId";
+  private static final String PRIORITY_KEY = "priority";
+  private static final String TIMEOUT_MS_KEY = "timeoutMs";
+  private static final String CANCELLED_KEY = "cancelled";
+  private static final String TIMED_OUT_KEY = "timedOut";
+  private static final String RENDERED_COUNT_KEY = "renderedCount";
+  private static final String CACHED_COUNT_KEY = "cachedCount";
+  private static final String SEPIA_KEY = "sepia";
+  private static final String BRIGHTNESS_KEY = "brightness";
+  private static final String CONTRAST_KEY = "contrast";
+  private static final String SATURATION_KEY = "saturation";
+  private static final String COLOR_MATRIX_KEY = "colorMatrix";
+  private static final String SINGLE_CHANNEL_KEY = "singleChannel";
+  private static final String RENDITIONS_KEY = "renditions";
+  private static final String MAX_EDGE_KEY = "maxEdge";
+  private static final String CACHE_SOURCE_KEY = "cacheSource";
+
+  private static final List<String> METRICS_BYTE_SERIES = Collections.unmodifiableList(Arrays.asList(
+          ImageMetrics.BYTES_IN, ImageMetrics.BYTES_OUT, ImageMetrics.BITMAP_BYTES));
+
+  private static final List<String> RESULT_CACHE_PARAM_KEYS = Collections.unmodifiableList(Arrays.asList(
+          RESIZE_RATIO_KEY, GRAYSCALE_KEY, IMAGE_QUALITY_KEY, CROP_KEY, MAX_BYTES_KEY, ALLOW_DOWNSCALE_KEY,
+          SEPIA_KEY, BRIGHTNESS_KEY, CONTRAST_KEY, SATURATION_KEY, COLOR_MATRIX_KEY, SINGLE_CHANNEL_KEY,
+          AUTO_ORIENT_KEY, KEEP_EXIF_KEY, RESIZE_MODE_KEY, MAX_WIDTH_KEY, MAX_HEIGHT_KEY, FIT_KEY));
+
+  private static final String FIT_CONTAIN = "contain";
+  private static final String FIT_COVER = "cover";
+  private static final String FIT_FILL = "fill";
+
+  private static final String BATCH_ID_KEY = "batchId";
+  private static final String PARALLELISM_KEY = "parallelism";
+  private static final String INDEX_KEY = "index";
+  private static final String COMPLETED_KEY = "completed";
+  private static final String TOTAL_KEY = "total";
+
+  private static final String EXIF_TAGS_KEY = "exifTags";
+  private static final String WIDTH_KEY = "width";
+  private static final String HEIGHT_KEY = "height";
+  private static final String MIME_TYPE_KEY = "mimeType";
+  private static final String ORIENTATION_KEY = "orientation";
+
+  private static final List<String> DEFAULT_INFO_EXIF_TAGS = Collections.unmodifiableList(Arrays.asList(
+          ExifInterface.TAG_DATETIME_ORIGINAL, ExifInterface.TAG_MAKE, ExifInterface.TAG_MODEL));
+
+  private static final String BATCH_PROGRESS_EVENT = "RNImageModifierBatchProgress";
+  private static final String CHUNK_EVENT = "RNImageModifierChunk";
+
+  private static final String THREAD_COUNT_KEY = "threadCount";
+  private static final String MAX_QUEUE_SIZE_KEY = "maxQueueSize";
 
   private static final String ANDROID_URI_FILE_SCHEME = "file://";
+  private static final String EXIF_FORMAT_STRING = "string";
 
-  private static Bitmap.CompressFormat COMPRESS_FORMAT = Bitmap.CompressFormat.valueOf("JPEG");
+  private static final Bitmap.CompressFormat DEFAULT_COMPRESS_FORMAT = Bitmap.CompressFormat.JPEG;
 
   public RNImageModifierModule(ReactApplicationContext reactContext) {
     super(reactContext);
@@ -79,86 +259,1269 @@ public class RNImageModifierModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void imageModifier(ReadableMap data, final Callback responseCb) {
+  public void imageModifier(final ReadableMap data, final Callback responseCb) {
+    final ImageJob job = this.startJob(data, null);
+    try {
+      this.workerPool.execute(new Runnable() {
+        @Override
+        public void run() {
+          responseCb.invoke(modifyImage(data, job));
+        }
+      }, job.getPriority());
+    } catch (RejectedExecutionException ex) {
+      this.endJob(job);
+      responseCb.invoke(this.getReturnMessage(false, ex.getMessage()));
+    }
+  }
+
+  @ReactMethod
+  public void imageModifierAsync(final ReadableMap data, final Promise promise) {
+    final ImageJob job = this.startJob(data, null);
+    try {
+      this.workerPool.execute(new Runnable() {
+        @Override
+        public void run() {
+          promise.resolve(modifyImage(data, job));
+        }
+      }, job.getPriority());
+    } catch (RejectedExecutionException ex) {
+      this.endJob(job);
+      promise.reject(ERROR_CODE_QUEUE_FULL, ex.getMessage());
+    }
+  }
+
+  /**
+   * Cancels a queued or running job. A queued job answers as soon as a worker picks it up,
+   * a running one at its next stage. The response tells whether the job was still alive.
+   */
+  @ReactMethod
+  public void cancel(final String jobId, final Callback responseCb) {
+    final ImageJob job = jobId != null ? this.jobs.get(jobId) : null;
+    if (job != null) {
+      job.cancel();
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putBoolean(CANCELLED_KEY, job != null);
+    responseCb.invoke(response);
+  }
+
+  /**
+   * Processes every item on up to `parallelism` workers. Each item gets its own response map,
+   * so one failing item does not abort the rest, and the results keep the input order.
+   */
+  @ReactMethod
+  public void imageModifierBatch(final ReadableArray items, final ReadableMap options, final Promise promise) {
+    final int total = items.size();
+    final String batchId = (options != null && options.hasKey(BATCH_ID_KEY))
+            ? options.getString(BATCH_ID_KEY) : Integer.toString(BATCH_ID_GENERATOR.incrementAndGet());
+
+    int parallelism = this.workerPool.getThreadCount();
+    if (options != null && options.hasKey(PARALLELISM_KEY)) {
+      parallelism = options.getInt(PARALLELISM_KEY);
+    }
+    parallelism = Math.max(1, Math.min(parallelism, total));
+
+    // every item is cancellable by its jobId from the start of the batch
+    final int batchPriority = this.getPriority(options, ImageJob.DEFAULT_PRIORITY);
+    final ImageJob[] itemJobs = new ImageJob[total];
+    final int[] priorities = new int[total];
+    for (int i = 0; i < total; i++) {
+      itemJobs[i] = items.getType(i) == ReadableType.Map ? this.startJob(items.getMap(i), options) : null;
+      priorities[i] = itemJobs[i] != null ? itemJobs[i].getPriority() : batchPriority;
+    }
+
+    final boolean isStarted = this.processItems(total, parallelism, new ItemProcessor() {
+      @Override
+      public WritableMap process(int index) {
+        if (itemJobs[index] == null) {
+          return getReturnMessage(false, items.isNull(index) ? ERROR_MESSAGE_EMPTY_URI_KEY : ERROR_MESSAGE_INVALID_ITEM);
+        }
+        return modifyImage(items.getMap(index), itemJobs[index]);
+      }
+
+      @Override
+      public void onProcessed(int index, int completed, WritableMap result) {
+        sendBatchProgress(batchId, index, completed, total, result.getBoolean(SUCCESS_KEY));
+      }
+    }, priorities, promise);
+
+    if (isStarted == false) {
+      for (ImageJob job : itemJobs) {
+        if (job != null) {
+          this.endJob(job);
+        }
+      }
+    }
+  }
+
+  /**
+   * Renders the items into the result cache, so a later modify with the same params and cache: true
+   * is answered from the cache. Items run on up to `parallelism` lanes (all workers but one by default)
+   * at a low priority, and every lane goes back through the queue after each item, so requests
+   * submitted meanwhile start first. Resolves once every item is done.
+   */
+  @ReactMethod
+  public void prefetch(final ReadableArray items, final ReadableMap options, final Promise promise) {
+    final int total = items.size();
+    if (total == 0) {
+      promise.resolve(this.getPrefetchResult(0, 0, 0));
+      return;
+    }
+
+    int parallelism = Math.max(1, this.workerPool.getThreadCount() - 1);
+    if (options != null && options.hasKey(PARALLELISM_KEY)) {
+      parallelism = options.getInt(PARALLELISM_KEY);
+    }
+    parallelism = Math.max(1, Math.min(parallelism, total));
+    final int priority = this.getPriority(options, ImageJob.PREFETCH_PRIORITY);
+
+    final ImageJob[] itemJobs = new ImageJob[total];
+    for (int i = 0; i < total; i++) {
+      itemJobs[i] = items.getType(i) == ReadableType.Map ? this.startJob(items.getMap(i), options, ImageJob.PREFETCH_PRIORITY) : null;
+    }
+
+    final AtomicInteger nextIndex = new AtomicInteger(0);
+    final AtomicInteger completedCount = new AtomicInteger(0);
+    final AtomicInteger renderedCount = new AtomicInteger(0);
+    final AtomicInteger cachedCount = new AtomicInteger(0);
+
+    Runnable lane = new Runnable() {
+      @Override
+      public void run() {
+        int index;
+        while ((index = nextIndex.getAndIncrement()) < total) {
+          WritableMap result;
+          if (itemJobs[index] == null) {
+            result = getReturnMessage(false, items.isNull(index) ? ERROR_MESSAGE_EMPTY_URI_KEY : ERROR_MESSAGE_INVALID_ITEM);
+          } else {
+            try {
+              result = prefetchItem(items.getMap(index), itemJobs[index]);
+            } catch (Throwable ex) {
+              endJob(itemJobs[index]);
+              result = getReturnMessage(false, ex.toString());
+            }
+          }
+          if (result.getBoolean(SUCCESS_KEY)) {
+            (result.hasKey(CACHED_KEY) && result.getBoolean(CACHED_KEY) ? cachedCount : renderedCount).incrementAndGet();
+          }
+
+          final int completed = completedCount.incrementAndGet();
+          if (completed == total) {
+            promise.resolve(getPrefetchResult(total, renderedCount.get(), cachedCount.get()));
+            return;
+          } else if (nextIndex.get() >= total) {
+            return;
+          }
+
+          try {
+            workerPool.execute(this, priority);
+            return;
+          } catch (RejectedExecutionException ignore) {
+            // the queue is full, this lane keeps the thread for its next item
+          }
+        }
+      }
+    };
+
+    int startedLaneCount = 0;
+    for (int i = 0; i < parallelism; i++) {
+      try {
+        this.workerPool.execute(lane, priority);
+        startedLaneCount++;
+      } catch (RejectedExecutionException ex) {
+        break;
+      }
+    }
+
+    if (startedLaneCount == 0) {
+      for (ImageJob job : itemJobs) {
+        if (job != null) {
+          this.endJob(job);
+        }
+      }
+      promise.reject(ERROR_CODE_QUEUE_FULL, "image worker queue is full.");
+    }
+  }
+
+  /**
+   * Whether the result of the params is in the result cache, without decoding anything.
+   * The params are the ones of modify, `cache` itself does not matter.
+   */
+  @ReactMethod
+  public void isCached(final ReadableMap data, final Callback responseCb) {
     final String errorMessage = this.requiredDataValidate(data);
     if (StringUtils.isStringValid(errorMessage)) {
       responseCb.invoke(this.getReturnMessage(false, errorMessage));
       return;
     }
 
-    Uri imageURI = Uri.parse(data.getString(PATH_KEY));
+    try {
+      final Bitmap.CompressFormat compressFormat = getCompressFormat(data);
+      final String resultCacheKey = ResultCache.getKey(this.reactContext, Uri.parse(data.getString(PATH_KEY)),
+              this.getNormalizedParams(data, compressFormat), compressFormat.name());
+      final File cachedFile = ResultCache.getInstance(this.reactContext).get(resultCacheKey);
+
+      WritableMap response = this.getReturnMessage(true);
+      response.putBoolean(CACHED_KEY, cachedFile != null);
+      if (cachedFile != null) {
+        response.putString(IMAGE_URI_KEY, ANDROID_URI_FILE_SCHEME.concat(cachedFile.getAbsolutePath()));
+      }
+      responseCb.invoke(response);
+    } catch (Exception ex) {
+      responseCb.invoke(this.getReturnMessage(false, ex.toString()));
+    }
+  }
+
+  /**
+   * Width, height, mime type, orientation and the requested EXIF tags of every path,
+   * read from the image header only, so no pixel memory is allocated.
+   */
+  @ReactMethod
+  public void getImageInfo(final ReadableArray paths, final ReadableMap options, final Promise promise) {
+    final int total = paths.size();
+
+    final List<String> exifTags = new ArrayList<>(DEFAULT_INFO_EXIF_TAGS);
+    if (options != null && options.hasKey(EXIF_TAGS_KEY)) {
+      exifTags.clear();
+      final ReadableArray requestedTags = options.getArray(EXIF_TAGS_KEY);
+      for (int i = 0; i < requestedTags.size(); i++) {
+        exifTags.add(requestedTags.getString(i));
+      }
+    }
+
+    int parallelism = this.workerPool.getThreadCount();
+    if (options != null && options.hasKey(PARALLELISM_KEY)) {
+      parallelism = options.getInt(PARALLELISM_KEY);
+    }
+
+    final int[] priorities = new int[total];
+    Arrays.fill(priorities, ImageJob.DEFAULT_PRIORITY);
+
+    this.processItems(total, Math.max(1, Math.min(parallelism, total)), new ItemProcessor() {
+      @Override
+      public WritableMap process(int index) {
+        // a non-string path answers like a missing one instead of throwing from getString
+        final String path = paths.getType(index) == ReadableType.String ? paths.getString(index) : null;
+        return getImageInfo(path, exifTags);
+      }
+
+      @Override
+      public void onProcessed(int index, int completed, WritableMap result) {}
+    }, priorities, promise);
+  }
+
+  @ReactMethod
+  public void configureWorkerPool(final ReadableMap options, final Callback responseCb) {
+    int threadCount = this.workerPool.getThreadCount();
+    if (options.hasKey(THREAD_COUNT_KEY)) {
+      threadCount = options.getInt(THREAD_COUNT_KEY);
+    }
+
+    int maxQueueSize = this.workerPool.getMaxQueueSize();
+    if (options.hasKey(MAX_QUEUE_SIZE_KEY)) {
+      maxQueueSize = options.getInt(MAX_QUEUE_SIZE_KEY);
+    }
+
+    this.workerPool.configure(threadCount, maxQueueSize);
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putInt(THREAD_COUNT_KEY, this.workerPool.getThreadCount());
+    response.putInt(MAX_QUEUE_SIZE_KEY, this.workerPool.getMaxQueueSize());
+    responseCb.invoke(response);
+  }
+
+  /**
+   * Requests whose decoded bitmap would exceed thresholdBytes are rendered band by band,
+   * with about tileBytes of decoded pixels per band.
+   */
+  @ReactMethod
+  public void configureTiledMode(final ReadableMap options, final Callback responseCb) {
+    if (options.hasKey(THRESHOLD_BYTES_KEY)) {
+      this.tiledThresholdBytes = Math.max(0, (long)options.getDouble(THRESHOLD_BYTES_KEY));
+    }
+    if (options.hasKey(TILE_BYTES_KEY)) {
+      this.tileBytes = Math.max(1, (long)options.getDouble(TILE_BYTES_KEY));
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(THRESHOLD_BYTES_KEY, this.tiledThresholdBytes);
+    response.putDouble(TILE_BYTES_KEY, this.tileBytes);
+    responseCb.invoke(response);
+  }
+
+  /**
+   * Color filters of outputs with at least kernelMinPixels pixels are applied by the multi-core
+   * color matrix kernel instead of the canvas color filter. A negative value always uses the canvas.
+   */
+  @ReactMethod
+  public void configureFilterEngine(final ReadableMap options, final Callback responseCb) {
+    if (options.hasKey(KERNEL_MIN_PIXELS_KEY)) {
+      this.kernelMinPixels = (long)options.getDouble(KERNEL_MIN_PIXELS_KEY);
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(KERNEL_MIN_PIXELS_KEY, this.kernelMinPixels);
+    responseCb.invoke(response);
+  }
+
+  /**
+   * policy is 'queue', 'downscale' or 'reject', budgetBytes bounds the sum of the reservations
+   * and a queued request fails after queueTimeoutMs.
+   */
+  @ReactMethod
+  public void configureMemoryGovernor(final ReadableMap options, final Callback responseCb) {
+    final MemoryGovernor memoryGovernor = MemoryGovernor.getInstance(this.reactContext);
+
+    MemoryGovernor.Policy policy = memoryGovernor.getPolicy();
+    if (options.hasKey(POLICY_KEY)) {
+      try {
+        policy = MemoryGovernor.Policy.valueOf(options.getString(POLICY_KEY).trim().toUpperCase());
+      } catch (IllegalArgumentException ex) {
+        responseCb.invoke(this.getReturnMessage(false, ERROR_MESSAGE_INVALID_POLICY));
+        return;
+      }
+    }
+
+    final long budgetBytes = options.hasKey(BUDGET_BYTES_KEY)
+            ? (long)options.getDouble(BUDGET_BYTES_KEY) : memoryGovernor.getBudgetBytes();
+    final long queueTimeoutMs = options.hasKey(QUEUE_TIMEOUT_MS_KEY)
+            ? (long)options.getDouble(QUEUE_TIMEOUT_MS_KEY) : memoryGovernor.getQueueTimeoutMs();
+    memoryGovernor.configure(policy, budgetBytes, queueTimeoutMs);
 
+    this.getMemoryReservations(responseCb);
+  }
+
+  @ReactMethod
+  public void getMemoryReservations(final Callback responseCb) {
+    final MemoryGovernor memoryGovernor = MemoryGovernor.getInstance(this.reactContext);
+
+    WritableArray reservations = Arguments.createArray();
+    for (MemoryGovernor.Reservation reservation : memoryGovernor.getReservations()) {
+      WritableMap reservationMap = Arguments.createMap();
+      reservationMap.putString(PATH_KEY, reservation.getLabel());
+      reservationMap.putDouble(BYTES_KEY, reservation.getBytes());
+      reservationMap.putInt(MEMORY_DOWNSCALE_KEY, reservation.getDownscale());
+      reservationMap.putDouble(AGE_MS_KEY, reservation.getAgeMs());
+      reservations.pushMap(reservationMap);
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putString(POLICY_KEY, memoryGovernor.getPolicy().name().toLowerCase());
+    response.putDouble(BUDGET_BYTES_KEY, memoryGovernor.getBudgetBytes());
+    response.putDouble(RESERVED_BYTES_KEY, memoryGovernor.getReservedBytes());
+    response.putDouble(QUEUE_TIMEOUT_MS_KEY, memoryGovernor.getQueueTimeoutMs());
+    response.putInt(WAITING_COUNT_KEY, memoryGovernor.getWaitingCount());
+    response.putDouble(REJECTED_COUNT_KEY, memoryGovernor.getRejectedCount());
+    response.putDouble(DOWNSCALED_COUNT_KEY, memoryGovernor.getDownscaledCount());
+    response.putArray(RESERVATIONS_KEY, reservations);
+    responseCb.invoke(response);
+  }
+
+  @Override
+  public void onCatalystInstanceDestroy() {
+    // nobody is left to receive the responses
+    for (ImageJob job : this.jobs.values()) {
+      job.cancel();
+    }
+    this.workerPool.shutdown();
+  }
+
+  /**
+   * Runs the whole request on the calling thread and always returns a response map, never throws.
+   */
+  private WritableMap modifyImage(ReadableMap data, ImageJob job) {
+    final ImageMetrics.Timer timer = new ImageMetrics.Timer();
+    final WritableMap response;
     try {
-      Bitmap sourceImage = ImageModifierUtil.getSourceImageByPath(this.reactContext, imageURI);
+      response = this.modifyImage(data, job, timer);
+    } finally {
+      this.endJob(job);
+    }
+    timer.finish();
 
-      Bitmap resizeImage = null;
-      if (data.hasKey(RESIZE_RATIO_KEY) == true) {
-        final float resizeRatio = Float.parseFloat(data.getString(RESIZE_RATIO_KEY));
-        if (resizeRatio > 0.0 && resizeRatio < 1.0) {
-          resizeImage = ImageModifierUtil.getImageByResize(sourceImage, resizeRatio, false);
+    response.putString(JOB_ID_KEY, job.getId());
+    if (response.getBoolean(SUCCESS_KEY) == false && job.isCancelled()) {
+      response.putBoolean(CANCELLED_KEY, true);
+      response.putBoolean(TIMED_OUT_KEY, ImageJob.REASON_TIMEOUT.equals(job.getCancelReason()));
+    }
+
+    final boolean isSuccess = response.getBoolean(SUCCESS_KEY);
+    ImageMetrics.getInstance().record(timer, isSuccess);
+    if (isSuccess && getBooleanParam(data, TIMINGS_KEY)) {
+      WritableMap timings = Arguments.createMap();
+      for (Map.Entry<String, Long> entry : timer.getStageNanos().entrySet()) {
+        timings.putDouble(entry.getKey(), entry.getValue() / 1e6);
+      }
+      response.putMap(TIMINGS_KEY, timings);
+    }
+    return response;
+  }
+
+  private WritableMap modifyImage(ReadableMap data, ImageJob job, ImageMetrics.Timer timer) {
+    final String errorMessage = this.requiredDataValidate(data);
+    if (StringUtils.isStringValid(errorMessage)) {
+      return this.getReturnMessage(false, errorMessage);
+    } else if (data.hasKey(RENDITIONS_KEY) && data.isNull(RENDITIONS_KEY) == false) {
+      return this.modifyRenditions(data, job, timer);
+    }
+
+    Uri imageURI = Uri.parse(data.getString(PATH_KEY));
+    final boolean isBase64 = getBooleanParam(data, BASE64_KEY);
+
+    try(ImageSource imageSource = ImageSource.open(this.reactContext, imageURI)) {
+      job.checkpoint(ImageJob.STAGE_QUEUE);
+      imageSource.setJob(job);
+
+      final Bitmap.CompressFormat compressFormat = getCompressFormat(data);
+      final File outputPath = isBase64 ? null : getOutputPath(data);
+
+      String resultCacheKey = null;
+      if (isBase64 == false && outputPath == null && getBooleanParam(data, CACHE_KEY)) {
+        timer.start(ImageMetrics.STAGE_CACHE_LOOKUP);
+        resultCacheKey = ResultCache.getKey(this.reactContext, imageURI, this.getNormalizedParams(data, compressFormat), compressFormat.name());
+
+        final File cachedFile = ResultCache.getInstance(this.reactContext).get(resultCacheKey);
+        if (cachedFile != null) {
+          timer.stop();
+          WritableMap response = this.getReturnMessage(true);
+          response.putString(IMAGE_URI_KEY, ANDROID_URI_FILE_SCHEME.concat(cachedFile.getAbsolutePath()));
+          response.putBoolean(CACHED_KEY, true);
+          if (data.hasKey(EXTRACT_EXIF_KEY)) {
+            this.putEXIF(response, imageSource, data);
+          }
+          return response;
         }
+        timer.stop();
       }
 
-      Bitmap grayscaleImage = null;
-      if (data.hasKey(GRAYSCALE_KEY) && Boolean.parseBoolean(data.getString(GRAYSCALE_KEY))) {
-        grayscaleImage = ImageModifierUtil.imageToGrayscale(resizeImage != null ? resizeImage : sourceImage);
+      timer.start(ImageMetrics.STAGE_BOUNDS);
+      final BitmapFactory.Options imageBounds = ImageModifierUtil.getImageBounds(imageSource);
+      final int orientation = getAutoOrientation(data, imageSource);
+      timer.setBytesIn(imageSource.getByteLength());
+      timer.stop();
+
+      final ImagePipeline.Resampling resampling = getResampling(data);
+
+      // sizes are worked out upright and turned back to the stored orientation for the decoder
+      final Rect uprightRegion = this.getUprightRegion(data, imageBounds, orientation);
+      final int[] uprightSize = getUprightTargetSize(data, uprightRegion);
+      final Rect cropRegion = getSourceRegion(uprightRegion, imageBounds, orientation);
+      final int sourceWidth = cropRegion != null ? cropRegion.width() : imageBounds.outWidth;
+      final int sourceHeight = cropRegion != null ? cropRegion.height() : imageBounds.outHeight;
+
+      final boolean isTransposed = ImagePipeline.isTransposed(orientation);
+      final int requestedWidth = isTransposed ? uprightSize[1] : uprightSize[0];
+      final int requestedHeight = isTransposed ? uprightSize[0] : uprightSize[1];
+
+      job.checkpoint(ImageMetrics.STAGE_ADMISSION);
+      timer.start(ImageMetrics.STAGE_ADMISSION);
+      final MemoryGovernor.Reservation reservation = MemoryGovernor.getInstance(this.reactContext).acquire(
+              getReservationLabel(imageURI, job), new MemoryGovernor.Estimator() {
+                @Override
+                public long estimate(int downscale) {
+                  return estimateRequestBytes(sourceWidth, sourceHeight,
+                          Math.max(1, requestedWidth / downscale), Math.max(1, requestedHeight / downscale), resampling, imageBounds.outMimeType);
+                }
+              }, job);
+      timer.stop();
+
+      if (reservation.getDownscale() > 1) {
+        // a downscaled result must not be served to the full size request later
+        resultCacheKey = null;
       }
 
-      float imageQuality = 1.0f;
-      if (data.hasKey(IMAGE_QUALITY_KEY) == true) {
+      // the bitmaps this request still owns, set to null once they are released or handed over,
+      // whatever is left is released on the way out, also when a step throws
+      Bitmap sourceImage = null;
+      Bitmap targetImage = null;
+      try {
+        final int targetWidth = Math.max(1, requestedWidth / reservation.getDownscale());
+        final int targetHeight = Math.max(1, requestedHeight / reservation.getDownscale());
+        final int inSampleSize = getInSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight, resampling, imageBounds.outMimeType);
+
+        // grayscale JPEG and PNG are encoded from an 8 bit plane instead of an ARGB output bitmap
+        boolean isSingleChannel = getBooleanParam(data, GRAYSCALE_KEY) && GrayscaleImage.isEncodable(compressFormat)
+                && (data.hasKey(COLOR_MATRIX_KEY) == false || data.isNull(COLOR_MATRIX_KEY))
+                && getDoubleParam(data, MAX_BYTES_KEY, 0) <= 0
+                && (data.hasKey(SINGLE_CHANNEL_KEY) == false || getBooleanParam(data, SINGLE_CHANNEL_KEY));
+
+        job.checkpoint(ImageMetrics.STAGE_DECODE);
+        ImagePipeline pipeline = new ImagePipeline().setKernelMinPixels(this.kernelMinPixels).setJob(job).setResampling(resampling);
+        pipeline.addStage(ImagePipeline.scale(targetWidth, targetHeight));
+        pipeline.addStage(ImagePipeline.orient(orientation));
+        this.addColorStages(pipeline, data, isSingleChannel == false);
+
+        float imageQuality = 1.0f;
+        if (data.hasKey(IMAGE_QUALITY_KEY) == true) {
+          try {
+            imageQuality = Float.parseFloat(data.getString(IMAGE_QUALITY_KEY));
+          } catch (NumberFormatException ignore) {}
+        }
+
+        final int estimatedDecodeWidth = (sourceWidth + inSampleSize - 1) / inSampleSize;
+        final int estimatedDecodeHeight = (sourceHeight + inSampleSize - 1) / inSampleSize;
+        final long estimatedDecodeBytes = (long)estimatedDecodeWidth * estimatedDecodeHeight * 4;
+
+        GrayscaleImage grayscaleImage = null;
+        boolean isTiled = false;
+        if (estimatedDecodeBytes > this.tiledThresholdBytes) {
+          if (isSingleChannel) {
+            // bands are assembled into an ARGB output, grayscale is applied while drawing them
+            pipeline.addStage(ImagePipeline.grayscale());
+            isSingleChannel = false;
+          }
+
+          final Rect sourceRegion = cropRegion != null ? cropRegion : new Rect(0, 0, imageBounds.outWidth, imageBounds.outHeight);
+          timer.start(ImageMetrics.STAGE_TILED);
+          targetImage = ImageModifierUtil.renderTiled(imageSource, pipeline, sourceRegion, inSampleSize, this.tileBytes);
+          isTiled = targetImage != null;
+          timer.stop();
+          if (isTiled) {
+            timer.updatePeakBitmapBytes(targetImage.getAllocationByteCount() + Math.min(this.tileBytes, estimatedDecodeBytes));
+          }
+        }
+
+        int decodeWidth = estimatedDecodeWidth;
+        int decodeHeight = estimatedDecodeHeight;
+        boolean isSourceCached = false;
+        if (targetImage == null) {
+          String sourceCacheKey = null;
+          if (cropRegion == null && getBooleanParam(data, CACHE_SOURCE_KEY)) {
+            sourceCacheKey = ResultCache.getSourceKey(this.reactContext, imageURI);
+            sourceImage = SourceBitmapCache.getInstance(this.reactContext).acquire(sourceCacheKey, inSampleSize);
+          }
+
+          isSourceCached = sourceImage != null;
+          timer.start(ImageMetrics.STAGE_DECODE);
+          if (sourceImage == null && cropRegion != null) {
+            sourceImage = ImageModifierUtil.getSourceImageRegion(imageSource, cropRegion, inSampleSize);
+          } else if (sourceImage == null) {
+            sourceImage = ImageModifierUtil.getSourceImage(imageSource, imageBounds, inSampleSize);
+            if (sourceCacheKey != null) {
+              SourceBitmapCache.getInstance(this.reactContext).put(sourceCacheKey, inSampleSize, sourceImage);
+            }
+          }
+          decodeWidth = sourceImage.getWidth();
+          decodeHeight = sourceImage.getHeight();
+
+          job.checkpoint(ImageMetrics.STAGE_RENDER);
+
+          timer.start(ImageMetrics.STAGE_RENDER);
+          if (isSingleChannel && sourceImage.hasAlpha() == false) {
+            grayscaleImage = pipeline.renderGrayscale(sourceImage);
+            timer.stop();
+            timer.updatePeakBitmapBytes((long)sourceImage.getAllocationByteCount() + grayscaleImage.getByteCount());
+            ImageModifierUtil.releaseBitmap(sourceImage);
+            sourceImage = null;
+          } else {
+            if (isSingleChannel) {
+              // a single channel image can't keep the alpha
+              pipeline.addStage(ImagePipeline.grayscale());
+              isSingleChannel = false;
+            }
+
+            targetImage = pipeline.render(sourceImage);
+            timer.stop();
+            timer.updatePeakBitmapBytes(targetImage != sourceImage
+                    ? (long)sourceImage.getAllocationByteCount() + targetImage.getAllocationByteCount() : sourceImage.getAllocationByteCount());
+            if (targetImage != sourceImage) {
+              ImageModifierUtil.releaseBitmap(sourceImage);
+            }
+            // an identity render hands the source on as the target
+            sourceImage = null;
+          }
+        }
+
         try {
-          imageQuality = Float.parseFloat(data.getString(IMAGE_QUALITY_KEY));
-        } catch (NumberFormatException ignore) {}
+          job.checkpoint(ImageMetrics.STAGE_ENCODE);
+
+          WritableMap response = this.getReturnMessage(true);
+          response.putInt(ORIGINAL_WIDTH_KEY, imageBounds.outWidth);
+          response.putInt(ORIGINAL_HEIGHT_KEY, imageBounds.outHeight);
+          response.putInt(DECODE_WIDTH_KEY, decodeWidth);
+          response.putInt(DECODE_HEIGHT_KEY, decodeHeight);
+          response.putInt(SAMPLE_SIZE_KEY, inSampleSize);
+          response.putBoolean(SOURCE_CACHED_KEY, isSourceCached);
+          response.putBoolean(TILED_KEY, isTiled);
+          response.putInt(MEMORY_DOWNSCALE_KEY, reservation.getDownscale());
+          response.putBoolean(SINGLE_CHANNEL_KEY, grayscaleImage != null);
+          if (getBooleanParam(data, AUTO_ORIENT_KEY)) {
+            response.putInt(ORIENTATION_KEY, orientation);
+          }
+          // replaced by the size of the fitting attempt with maxBytes and allowDownscale
+          response.putInt(WIDTH_KEY, pipeline.getOutputWidth());
+          response.putInt(HEIGHT_KEY, pipeline.getOutputHeight());
+
+          timer.start(ImageMetrics.STAGE_ENCODE);
+          TargetSizeEncoder targetSizeEncoder = null;
+          final long maxBytes = (long)getDoubleParam(data, MAX_BYTES_KEY, 0);
+          if (maxBytes > 0) {
+            targetSizeEncoder = new TargetSizeEncoder();
+            // the encoder takes over the bitmap, also when it fails
+            final Bitmap encodeImage = targetImage;
+            targetImage = null;
+            targetSizeEncoder.encode(encodeImage, compressFormat, maxBytes, (int)(imageQuality * 100),
+                    getBooleanParam(data, ALLOW_DOWNSCALE_KEY), TargetSizeEncoder.DEFAULT_MAX_ATTEMPTS);
+
+            response.putDouble(QUALITY_KEY, targetSizeEncoder.getQuality() / 100.0);
+            response.putInt(COMPRESS_ATTEMPTS_KEY, targetSizeEncoder.getAttemptCount());
+            response.putBoolean(FITS_MAX_BYTES_KEY, targetSizeEncoder.isFit());
+            response.putInt(BYTE_LENGTH_KEY, targetSizeEncoder.getByteLength());
+            response.putInt(WIDTH_KEY, targetSizeEncoder.getWidth());
+            response.putInt(HEIGHT_KEY, targetSizeEncoder.getHeight());
+          }
+
+          if (isBase64 && getBooleanParam(data, CHUNKED_KEY)) {
+            final String requestId = data.hasKey(REQUEST_ID_KEY)
+                    ? data.getString(REQUEST_ID_KEY) : Integer.toString(REQUEST_ID_GENERATOR.incrementAndGet());
+            final int chunkSize = (int)getDoubleParam(data, CHUNK_SIZE_KEY, DEFAULT_CHUNK_SIZE);
+
+            ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(chunkSize, new ChunkedOutputStream.ChunkListener() {
+              @Override
+              public void onChunk(byte[] chunk, int length, int index) {
+                sendChunk(requestId, index, Base64.encodeToString(chunk, 0, length, Base64.NO_WRAP));
+              }
+            });
+            try {
+              if (targetSizeEncoder != null) {
+                targetSizeEncoder.writeTo(chunkedOutputStream);
+              } else if (grayscaleImage != null) {
+                grayscaleImage.writeTo(chunkedOutputStream, compressFormat, 1.0f);
+              } else {
+                // the same quality as base64String
+                ImageModifierUtil.writeImage(targetImage, chunkedOutputStream, compressFormat, 1.0f);
+                targetImage = null;
+              }
+            } finally {
+              chunkedOutputStream.close();
+            }
+
+            timer.setBytesOut(chunkedOutputStream.getByteLength());
+            response.putString(REQUEST_ID_KEY, requestId);
+            response.putInt(CHUNK_COUNT_KEY, chunkedOutputStream.getChunkCount());
+            response.putDouble(BYTE_LENGTH_KEY, chunkedOutputStream.getByteLength());
+          } else if (isBase64) {
+            final String base64String;
+            if (targetSizeEncoder != null) {
+              base64String = targetSizeEncoder.toBase64();
+            } else if (grayscaleImage != null) {
+              base64String = grayscaleImage.toBase64(compressFormat, 1.0f);
+            } else {
+              base64String = ImageModifierUtil.getBase64FromBitmap(targetImage, compressFormat);
+              targetImage = null;
+            }
+            timer.setBytesOut(base64String.length() / 4 * 3);
+            response.putString(BASE64_STRING_KEY, base64String);
+          } else {
+            final File outputFile = this.newOutputFile(compressFormat, resultCacheKey, outputPath);
+            if (targetSizeEncoder != null) {
+              targetSizeEncoder.writeTo(outputFile);
+            } else if (grayscaleImage != null) {
+              grayscaleImage.writeTo(outputFile, compressFormat, imageQuality);
+            } else {
+              ImageModifierUtil.saveImageFile(targetImage, outputFile, compressFormat, imageQuality);
+              targetImage = null;
+            }
+
+            final List<String> keptExifTags = getKeptExifTags(data);
+            if (keptExifTags != null && compressFormat == Bitmap.CompressFormat.JPEG) {
+              writeExif(imageSource, outputFile, keptExifTags, getBooleanParam(data, AUTO_ORIENT_KEY));
+            }
+            timer.setBytesOut(outputFile.length());
+            response.putDouble(BYTE_LENGTH_KEY, outputFile.length());
+
+            if (job.isCancelled()) {
+              outputFile.delete();
+              job.checkpoint(ImageJob.STAGE_WRITE);
+            }
+
+            response.putString(IMAGE_URI_KEY, this.commitOutputFile(outputFile, resultCacheKey, outputPath));
+            if (resultCacheKey != null) {
+              response.putBoolean(CACHED_KEY, false);
+            }
+          }
+
+          timer.stop();
+
+          if (data.hasKey(EXTRACT_EXIF_KEY)) {
+            try {
+              timer.start(ImageMetrics.STAGE_EXIF);
+              this.putEXIF(response, imageSource, data);
+              timer.stop();
+            } catch (Exception ex) {
+              return this.getReturnMessage(false, ex.toString());
+            }
+          }
+
+          return response;
+        } catch (Exception ex) {
+          return this.getReturnMessage(false, ex.toString());
+        }
+      } finally {
+        // a cached source only drops the reference of this request, so the cache can evict it again
+        if (sourceImage != null) {
+          ImageModifierUtil.releaseBitmap(sourceImage);
+        }
+        if (targetImage != null) {
+          ImageModifierUtil.releaseBitmap(targetImage);
+        }
+        reservation.close();
       }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      return this.getReturnMessage(false, ex.toString());
+    } catch (OutOfMemoryError ex) {
+      return this.getReturnMessage(false, ex.toString());
+    }
+  }
+
+  /**
+   * Every rendition from one decode at the size the largest one needs, the encodes run in parallel.
+   * Each rendition has its own success, so one failed encode does not fail the others.
+   */
+  private WritableMap modifyRenditions(ReadableMap data, ImageJob job, ImageMetrics.Timer timer) {
+    Uri imageURI = Uri.parse(data.getString(PATH_KEY));
+    final boolean isBase64 = getBooleanParam(data, BASE64_KEY);
+
+    try(ImageSource imageSource = ImageSource.open(this.reactContext, imageURI)) {
+      job.checkpoint(ImageJob.STAGE_QUEUE);
+      imageSource.setJob(job);
 
-      Bitmap targetImage = this.getTargetBitmap(grayscaleImage, resizeImage, sourceImage);
-      sourceImage.recycle();
+      final List<RenditionSet.Rendition> renditions = this.getRenditions(data);
+      final RenditionSet renditionSet = new RenditionSet(renditions);
+
+      timer.start(ImageMetrics.STAGE_BOUNDS);
+      final BitmapFactory.Options imageBounds = ImageModifierUtil.getImageBounds(imageSource);
+      final int orientation = getAutoOrientation(data, imageSource);
+      renditionSet.setOrientation(orientation);
+      timer.setBytesIn(imageSource.getByteLength());
+      timer.stop();
+
+      final Rect cropRegion = this.getCropRegion(data, imageBounds, orientation);
+      final int sourceWidth = cropRegion != null ? cropRegion.width() : imageBounds.outWidth;
+      final int sourceHeight = cropRegion != null ? cropRegion.height() : imageBounds.outHeight;
+
+      timer.start(ImageMetrics.STAGE_ADMISSION);
+      final MemoryGovernor.Reservation reservation = MemoryGovernor.getInstance(this.reactContext).acquire(
+              getReservationLabel(imageURI, job), new MemoryGovernor.Estimator() {
+                @Override
+                public long estimate(int downscale) {
+                  renditionSet.prepare(sourceWidth, sourceHeight, downscale);
+                  final int inSampleSize = renditionSet.getInSampleSize(sourceWidth, sourceHeight);
+                  return (long)((sourceWidth + inSampleSize - 1) / inSampleSize) * ((sourceHeight + inSampleSize - 1) / inSampleSize) * 4
+                          + renditionSet.getTotalBytes();
+                }
+              }, job);
+      timer.stop();
 
       try {
+        renditionSet.prepare(sourceWidth, sourceHeight, reservation.getDownscale());
+        final int inSampleSize = renditionSet.getInSampleSize(sourceWidth, sourceHeight);
+
+        timer.start(ImageMetrics.STAGE_DECODE);
+        final Bitmap sourceImage = cropRegion != null
+                ? ImageModifierUtil.getSourceImageRegion(imageSource, cropRegion, inSampleSize)
+                : ImageModifierUtil.getSourceImage(imageSource, imageBounds, inSampleSize);
+
+        if (job.isCancelled()) {
+          ImageModifierUtil.releaseBitmap(sourceImage);
+          job.checkpoint(ImageMetrics.STAGE_RENDER);
+        }
+
         WritableMap response = this.getReturnMessage(true);
-        if (data.hasKey(BASE64_KEY) && Boolean.parseBoolean(data.getString(BASE64_KEY))) {
-          response.putString(BASE64_STRING_KEY, ImageModifierUtil.getBase64FromBitmap(targetImage, COMPRESS_FORMAT));
-        } else {
-          response.putString(IMAGE_URI_KEY, this.saveToLocalStorage(targetImage, imageQuality));
+        response.putInt(ORIGINAL_WIDTH_KEY, imageBounds.outWidth);
+        response.putInt(ORIGINAL_HEIGHT_KEY, imageBounds.outHeight);
+        response.putInt(DECODE_WIDTH_KEY, sourceImage.getWidth());
+        response.putInt(DECODE_HEIGHT_KEY, sourceImage.getHeight());
+        response.putInt(SAMPLE_SIZE_KEY, inSampleSize);
+        response.putInt(MEMORY_DOWNSCALE_KEY, reservation.getDownscale());
+        if (getBooleanParam(data, AUTO_ORIENT_KEY)) {
+          response.putInt(ORIENTATION_KEY, orientation);
         }
 
-        targetImage.recycle();
+        timer.start(ImageMetrics.STAGE_RENDER);
+        renditionSet.render(sourceImage);
+        timer.stop();
+        timer.updatePeakBitmapBytes((long)sourceImage.getAllocationByteCount() + renditionSet.getTotalBytes());
 
-        if (data.hasKey(EXTRACT_EXIF_KEY)) {
-          try(InputStream input = this.reactContext.getContentResolver().openInputStream(imageURI)) {
-            final String exifJsonString = EXIFUtils.getEXIFJsonString(input);
-            response.putString(EXIF_KEY, exifJsonString);
-          } catch (Exception ex) {
-            responseCb.invoke(this.getReturnMessage(false, ex.toString()));
+        job.checkpoint(ImageMetrics.STAGE_ENCODE);
+        timer.start(ImageMetrics.STAGE_ENCODE);
+        final OutputStore outputStore = OutputStore.getInstance(this.reactContext);
+        if (isBase64 == false) {
+          for (RenditionSet.Rendition rendition : renditions) {
+            File tempFile = outputStore.newTempFile(rendition.getCompressFormat().name());
+            tempFile.delete();
+            rendition.setOutputFile(tempFile);
+          }
+        }
+        renditionSet.encode(ForkJoinPool.commonPool());
+        if (isBase64 == false && job.isCancelled()) {
+          for (RenditionSet.Rendition rendition : renditions) {
+            rendition.getOutputFile().delete();
+          }
+          job.checkpoint(ImageJob.STAGE_WRITE);
+        } else if (isBase64 == false) {
+          final List<String> keptExifTags = getKeptExifTags(data);
+          for (RenditionSet.Rendition rendition : renditions) {
+            if (rendition.getError() == null && keptExifTags != null && rendition.getCompressFormat() == Bitmap.CompressFormat.JPEG) {
+              writeExif(imageSource, rendition.getOutputFile(), keptExifTags, getBooleanParam(data, AUTO_ORIENT_KEY));
+            }
+            if (rendition.getError() == null) {
+              rendition.setOutputFile(outputStore.commit(rendition.getOutputFile()));
+            }
           }
         }
+        timer.stop();
 
-        responseCb.invoke(response);
-      } catch (Exception ex) {
-        responseCb.invoke(this.getReturnMessage(false, ex.toString()));
+        long bytesOut = 0;
+        WritableArray renditionResults = Arguments.createArray();
+        for (RenditionSet.Rendition rendition : renditions) {
+          bytesOut += rendition.getByteLength();
+          renditionResults.pushMap(this.getRenditionResult(rendition));
+        }
+        timer.setBytesOut(bytesOut);
+        response.putArray(RENDITIONS_KEY, renditionResults);
+
+        if (data.hasKey(EXTRACT_EXIF_KEY)) {
+          timer.start(ImageMetrics.STAGE_EXIF);
+          this.putEXIF(response, imageSource, data);
+          timer.stop();
+        }
+
+        return response;
+      } finally {
+        renditionSet.close();
+        reservation.close();
       }
     } catch (Exception ex) {
       ex.printStackTrace();
-      responseCb.invoke(this.getReturnMessage(false, ex.toString()));
+      return this.getReturnMessage(false, ex.toString());
+    } catch (OutOfMemoryError ex) {
+      return this.getReturnMessage(false, ex.toString());
     }
   }
 
-  private Bitmap getTargetBitmap(Bitmap grayscaleImage, Bitmap resizeImage, Bitmap sourceImage) {
-    Bitmap targetImage;
-    if (grayscaleImage != null) {
-      targetImage = Bitmap.createBitmap(grayscaleImage);
-      grayscaleImage.recycle();
+  private List<RenditionSet.Rendition> getRenditions(final ReadableMap data) throws Exception {
+    final ReadableArray items = data.getArray(RENDITIONS_KEY);
+    if (items.size() == 0) {
+      throw new Exception(ERROR_MESSAGE_INVALID_RENDITIONS);
+    }
+
+    final Bitmap.CompressFormat defaultFormat = getCompressFormat(data);
+    final double defaultQuality = getDoubleParam(data, IMAGE_QUALITY_KEY, 1.0);
+    final boolean defaultGrayscale = getBooleanParam(data, GRAYSCALE_KEY);
 
-      if (resizeImage != null) {
-        resizeImage.recycle();
+    List<RenditionSet.Rendition> renditions = new ArrayList<>();
+    for (int i = 0; i < items.size(); i++) {
+      final ReadableMap item = items.isNull(i) ? null : items.getMap(i);
+      final int maxEdge = item != null ? (int)getDoubleParam(item, MAX_EDGE_KEY, 0) : 0;
+      if (maxEdge <= 0) {
+        throw new Exception(ERROR_MESSAGE_INVALID_RENDITIONS);
       }
-    } else if (resizeImage != null) {
-      targetImage = Bitmap.createBitmap(resizeImage);
-      resizeImage.recycle();
+
+      renditions.add(new RenditionSet.Rendition(maxEdge,
+              (float)getDoubleParam(item, QUALITY_KEY, defaultQuality),
+              item.hasKey(FORMAT_KEY) ? getCompressFormat(item) : defaultFormat,
+              item.hasKey(GRAYSCALE_KEY) ? getBooleanParam(item, GRAYSCALE_KEY) : defaultGrayscale));
+    }
+    return renditions;
+  }
+
+  private WritableMap getRenditionResult(final RenditionSet.Rendition rendition) {
+    if (rendition.getError() != null) {
+      WritableMap result = this.getReturnMessage(false, rendition.getError().toString());
+      result.putInt(MAX_EDGE_KEY, rendition.getMaxEdge());
+      return result;
+    }
+
+    WritableMap result = this.getReturnMessage(true);
+    result.putInt(MAX_EDGE_KEY, rendition.getMaxEdge());
+    result.putInt(WIDTH_KEY, rendition.getWidth());
+    result.putInt(HEIGHT_KEY, rendition.getHeight());
+    result.putBoolean(SINGLE_CHANNEL_KEY, rendition.isSingleChannel());
+    result.putDouble(BYTE_LENGTH_KEY, rendition.getByteLength());
+    if (rendition.getOutputFile() != null) {
+      result.putString(IMAGE_URI_KEY, ANDROID_URI_FILE_SCHEME.concat(rendition.getOutputFile().getAbsolutePath()));
     } else {
-      targetImage = Bitmap.createBitmap(sourceImage);
+      result.putString(BASE64_STRING_KEY, rendition.getBase64String());
     }
-    return targetImage;
+    return result;
+  }
+
+  @ReactMethod
+  public void getOutputStoreStats(final Callback responseCb) {
+    final OutputStore outputStore = OutputStore.getInstance(this.reactContext);
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putInt(COUNT_KEY, outputStore.getCount());
+    response.putDouble(SIZE_KEY, outputStore.getCurrentBytes());
+    response.putDouble(MAX_SIZE_KEY, outputStore.getMaxBytes());
+    response.putInt(MAX_COUNT_KEY, outputStore.getMaxCount());
+    response.putDouble(EVICTION_COUNT_KEY, outputStore.getEvictionCount());
+
+    responseCb.invoke(response);
+  }
+
+  /**
+   * Over maxSize bytes or maxCount files, the oldest outputs are deleted in the background.
+   */
+  @ReactMethod
+  public void configureOutputStore(final ReadableMap options, final Callback responseCb) {
+    final OutputStore outputStore = OutputStore.getInstance(this.reactContext);
+
+    final long maxBytes = options.hasKey(MAX_SIZE_KEY) ? (long)options.getDouble(MAX_SIZE_KEY) : outputStore.getMaxBytes();
+    final int maxCount = options.hasKey(MAX_COUNT_KEY) ? options.getInt(MAX_COUNT_KEY) : outputStore.getMaxCount();
+    outputStore.configure(maxBytes, maxCount);
+
+    this.getOutputStoreStats(responseCb);
+  }
+
+  /**
+   * Deletes returned output files the app does not need anymore. URIs of other files are ignored.
+   */
+  @ReactMethod
+  public void releaseFiles(final ReadableArray uris, final Callback responseCb) {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < uris.size(); i++) {
+      if (uris.isNull(i) == false) {
+        final String path = Uri.parse(uris.getString(i)).getPath();
+        if (StringUtils.isStringValid(path)) {
+          files.add(new File(path));
+        }
+      }
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putInt(COUNT_KEY, OutputStore.getInstance(this.reactContext).release(files));
+    responseCb.invoke(response);
+  }
+
+  @ReactMethod
+  public void clearOutputStore(final Callback responseCb) {
+    WritableMap response = this.getReturnMessage(true);
+    response.putInt(COUNT_KEY, OutputStore.getInstance(this.reactContext).clear());
+    responseCb.invoke(response);
+  }
+
+  @ReactMethod
+  public void getBitmapPoolStats(final Callback responseCb) {
+    final BitmapPool bitmapPool = BitmapPool.getInstance();
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(HIT_COUNT_KEY, bitmapPool.getHitCount());
+    response.putDouble(MISS_COUNT_KEY, bitmapPool.getMissCount());
+    response.putDouble(EVICTION_COUNT_KEY, bitmapPool.getEvictionCount());
+    response.putInt(COUNT_KEY, bitmapPool.getCount());
+    response.putDouble(SIZE_KEY, bitmapPool.getCurrentBytes());
+    response.putDouble(MAX_SIZE_KEY, bitmapPool.getMaxBytes());
+
+    responseCb.invoke(response);
+  }
+
+  /**
+   * Trims the bitmap pool to the given ratio (0.0 ~ 1.0) of its byte budget, 0.0 clears it.
+   */
+  @ReactMethod
+  public void trimBitmapPool(final double ratio, final Callback responseCb) {
+    final BitmapPool bitmapPool = BitmapPool.getInstance();
+    bitmapPool.trimToSize((long)(bitmapPool.getMaxBytes() * Math.max(0.0, Math.min(1.0, ratio))));
+
+    this.getBitmapPoolStats(responseCb);
+  }
+
+  @ReactMethod
+  public void clearBitmapPool(final Callback responseCb) {
+    BitmapPool.getInstance().clear();
+
+    this.getBitmapPoolStats(responseCb);
+  }
+
+  @ReactMethod
+  public void getResultCacheStats(final Callback responseCb) {
+    final ResultCache resultCache = ResultCache.getInstance(this.reactContext);
+    final long hitCount = resultCache.getHitCount();
+    final long requestCount = hitCount + resultCache.getMissCount();
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(HIT_COUNT_KEY, hitCount);
+    response.putDouble(MISS_COUNT_KEY, resultCache.getMissCount());
+    response.putDouble(HIT_RATE_KEY, requestCount > 0 ? (double)hitCount / requestCount : 0.0);
+    response.putInt(COUNT_KEY, resultCache.getCount());
+    response.putDouble(SIZE_KEY, resultCache.getCurrentBytes());
+    response.putDouble(MAX_SIZE_KEY, resultCache.getMaxBytes());
+
+    responseCb.invoke(response);
+  }
+
+  @ReactMethod
+  public void configureResultCache(final ReadableMap options, final Callback responseCb) {
+    if (options.hasKey(MAX_SIZE_KEY)) {
+      ResultCache.getInstance(this.reactContext).setMaxBytes((long)options.getDouble(MAX_SIZE_KEY));
+    }
+
+    this.getResultCacheStats(responseCb);
+  }
+
+  /**
+   * Removes every cached variant of the given source path, or the whole result cache when path is null.
+   */
+  @ReactMethod
+  public void invalidateResultCache(final String path, final Callback responseCb) {
+    try {
+      final int removedCount = ResultCache.getInstance(this.reactContext).invalidate(StringUtils.isStringValid(path) ? Uri.parse(path) : null);
+
+      WritableMap response = this.getReturnMessage(true);
+      response.putInt(COUNT_KEY, removedCount);
+      responseCb.invoke(response);
+    } catch (Exception ex) {
+      responseCb.invoke(this.getReturnMessage(false, ex.toString()));
+    }
+  }
+
+  @ReactMethod
+  public void getSourceCacheStats(final Callback responseCb) {
+    final SourceBitmapCache sourceCache = SourceBitmapCache.getInstance(this.reactContext);
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(HIT_COUNT_KEY, sourceCache.getHitCount());
+    response.putDouble(MISS_COUNT_KEY, sourceCache.getMissCount());
+    response.putInt(COUNT_KEY, sourceCache.getCount());
+    response.putDouble(SIZE_KEY, sourceCache.getCurrentBytes());
+    response.putDouble(MAX_SIZE_KEY, sourceCache.getMaxBytes());
+
+    responseCb.invoke(response);
+  }
+
+  @ReactMethod
+  public void clearSourceCache(final Callback responseCb) {
+    SourceBitmapCache.getInstance(this.reactContext).clear();
+
+    this.getSourceCacheStats(responseCb);
+  }
+
+  /**
+   * Percentiles over the latest requests of every stage in milliseconds, and of the byte series in bytes.
+   */
+  @ReactMethod
+  public void getMetrics(final Callback responseCb) {
+    final ImageMetrics metrics = ImageMetrics.getInstance();
+
+    WritableMap stages = Arguments.createMap();
+    WritableMap bytes = Arguments.createMap();
+    for (Map.Entry<String, ImageMetrics.Summary> entry : metrics.getSummaries().entrySet()) {
+      final String name = entry.getKey();
+      if (METRICS_BYTE_SERIES.contains(name)) {
+        bytes.putMap(name, getSummaryMap(entry.getValue(), 1.0));
+      } else {
+        stages.putMap(name, getSummaryMap(entry.getValue(), 1e6));
+      }
+    }
+
+    WritableMap response = this.getReturnMessage(true);
+    response.putDouble(REQUEST_COUNT_KEY, metrics.getRequestCount());
+    response.putDouble(FAILURE_COUNT_KEY, metrics.getFailureCount());
+    response.putDouble(PEAK_BITMAP_BYTES_KEY, metrics.getPeakBitmapBytes());
+    response.putMap(STAGES_KEY, stages);
+    response.putMap(BYTES_KEY, bytes);
+
+    responseCb.invoke(response);
+  }
+
+  @ReactMethod
+  public void resetMetrics(final Callback responseCb) {
+    ImageMetrics.getInstance().reset();
+
+    responseCb.invoke(this.getReturnMessage(true));
+  }
+
+  private static WritableMap getSummaryMap(final ImageMetrics.Summary summary, final double divisor) {
+    WritableMap summaryMap = Arguments.createMap();
+    summaryMap.putDouble(COUNT_KEY, summary.count);
+    summaryMap.putDouble(MIN_KEY, summary.min / divisor);
+    summaryMap.putDouble(MAX_KEY, summary.max / divisor);
+    summaryMap.putDouble(MEAN_KEY, summary.mean / divisor);
+    summaryMap.putDouble(P50_KEY, summary.p50 / divisor);
+    summaryMap.putDouble(P95_KEY, summary.p95 / divisor);
+    summaryMap.putDouble(P99_KEY, summary.p99 / divisor);
+    return summaryMap;
+  }
+
+  /**
+   * Peak bitmap bytes of a request, the decoded source (one band of it in tiled mode) and the output.
+   */
+  private long estimateRequestBytes(final int sourceWidth, final int sourceHeight, final int targetWidth, final int targetHeight,
+                                    final ImagePipeline.Resampling resampling, final String mimeType) {
+    final int inSampleSize = getInSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight, resampling, mimeType);
+    final long decodeBytes = (long)((sourceWidth + inSampleSize - 1) / inSampleSize) * ((sourceHeight + inSampleSize - 1) / inSampleSize) * 4;
+    final long targetBytes = (long)targetWidth * targetHeight * 4;
+
+    if (decodeBytes > this.tiledThresholdBytes) {
+      return Math.min(decodeBytes, this.tileBytes) + targetBytes;
+    }
+    // the halved copies of the quality mode, a quarter of the decode and less
+    return decodeBytes + (resampling == ImagePipeline.Resampling.QUALITY ? decodeBytes / 3 : 0) + targetBytes;
+  }
+
+  /**
+   * Decoders other than JPEG and WebP subsample by skipping pixels, so the quality mode decodes those
+   * one power of two larger and leaves the last 2x to the averaging halving of the pipeline.
+   */
+  private static int getInSampleSize(final int sourceWidth, final int sourceHeight, final int targetWidth, final int targetHeight,
+                                     final ImagePipeline.Resampling resampling, final String mimeType) {
+    final int inSampleSize = ImageModifierUtil.calculateInSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+    if (resampling == ImagePipeline.Resampling.QUALITY && "image/jpeg".equals(mimeType) == false && "image/webp".equals(mimeType) == false) {
+      return Math.max(1, inSampleSize / 2);
+    }
+    return inSampleSize;
+  }
+
+  private static ImagePipeline.Resampling getResampling(final ReadableMap data) throws Exception {
+    if (data.hasKey(RESIZE_MODE_KEY) == false || data.isNull(RESIZE_MODE_KEY)) {
+      return ImagePipeline.Resampling.BILINEAR;
+    }
+
+    try {
+      return ImagePipeline.Resampling.valueOf(data.getString(RESIZE_MODE_KEY).trim().toUpperCase());
+    } catch (IllegalArgumentException ex) {
+      throw new Exception(ERROR_MESSAGE_INVALID_RESIZE_MODE);
+    }
+  }
+
+  /**
+   * Output size in upright pixels. maxWidth and maxHeight with fit take precedence over resizeRatio, and the
+   * output is never larger than the region. With fit 'cover' the region is cut down to its centered part
+   * with the aspect ratio of the output.
+   */
+  private static int[] getUprightTargetSize(final ReadableMap data, final Rect uprightRegion) throws Exception {
+    final int width = uprightRegion.width();
+    final int height = uprightRegion.height();
+    final double maxWidth = getDoubleParam(data, MAX_WIDTH_KEY, 0);
+    final double maxHeight = getDoubleParam(data, MAX_HEIGHT_KEY, 0);
+
+    if (maxWidth <= 0 && maxHeight <= 0) {
+      float resizeRatio = 1.0f;
+      if (data.hasKey(RESIZE_RATIO_KEY) == true) {
+        final float inputResizeRatio = Float.parseFloat(data.getString(RESIZE_RATIO_KEY));
+        if (inputResizeRatio > 0.0 && inputResizeRatio < 1.0) {
+          resizeRatio = inputResizeRatio;
+        }
+      }
+      return new int[] { Math.max(1, (int)(width * resizeRatio)), Math.max(1, (int)(height * resizeRatio)) };
+    }
+
+    final String fit = data.hasKey(FIT_KEY) && data.isNull(FIT_KEY) == false ? data.getString(FIT_KEY).trim().toLowerCase() : FIT_CONTAIN;
+    final double scaleX = maxWidth > 0 ? maxWidth / width : Double.MAX_VALUE;
+    final double scaleY = maxHeight > 0 ? maxHeight / height : Double.MAX_VALUE;
+
+    if (FIT_FILL.equals(fit)) {
+      return new int[] { (int)Math.max(1, Math.min(width, Math.round(width * Math.min(1.0, scaleX)))),
+              (int)Math.max(1, Math.min(height, Math.round(height * Math.min(1.0, scaleY)))) };
+    } else if (FIT_COVER.equals(fit) && maxWidth > 0 && maxHeight > 0) {
+      final double scale = Math.min(1.0, Math.max(scaleX, scaleY));
+      final int targetWidth = (int)Math.max(1, Math.min(maxWidth, Math.round(width * scale)));
+      final int targetHeight = (int)Math.max(1, Math.min(maxHeight, Math.round(height * scale)));
+
+      final int keptWidth = (int)Math.max(1, Math.min(width, Math.round(targetWidth / scale)));
+      final int keptHeight = (int)Math.max(1, Math.min(height, Math.round(targetHeight / scale)));
+      uprightRegion.left += (width - keptWidth) / 2;
+      uprightRegion.top += (height - keptHeight) / 2;
+      uprightRegion.right = uprightRegion.left + keptWidth;
+      uprightRegion.bottom = uprightRegion.top + keptHeight;
+      return new int[] { targetWidth, targetHeight };
+    } else if (FIT_CONTAIN.equals(fit) || FIT_COVER.equals(fit)) {
+      final double scale = Math.min(1.0, Math.min(scaleX, scaleY));
+      return new int[] { (int)Math.max(1, Math.round(width * scale)), (int)Math.max(1, Math.round(height * scale)) };
+    }
+
+    throw new Exception(ERROR_MESSAGE_INVALID_FIT);
+  }
+
+  /**
+   * Color stages in a fixed order, brightness, contrast, saturation, sepia, grayscale and the custom matrix last.
+   */
+  private void addColorStages(final ImagePipeline pipeline, final ReadableMap data, final boolean includeGrayscale) throws Exception {
+    if (data.hasKey(BRIGHTNESS_KEY)) {
+      pipeline.addStage(ImagePipeline.brightness((float)getDoubleParam(data, BRIGHTNESS_KEY, 0)));
+    }
+    if (data.hasKey(CONTRAST_KEY)) {
+      pipeline.addStage(ImagePipeline.contrast((float)getDoubleParam(data, CONTRAST_KEY, 1)));
+    }
+    if (data.hasKey(SATURATION_KEY)) {
+      pipeline.addStage(ImagePipeline.saturation((float)getDoubleParam(data, SATURATION_KEY, 1)));
+    }
+    if (getBooleanParam(data, SEPIA_KEY)) {
+      pipeline.addStage(ImagePipeline.sepia());
+    }
+    if (includeGrayscale && getBooleanParam(data, GRAYSCALE_KEY)) {
+      pipeline.addStage(ImagePipeline.grayscale());
+    }
+    if (data.hasKey(COLOR_MATRIX_KEY) && data.isNull(COLOR_MATRIX_KEY) == false) {
+      final ReadableArray colorMatrix = data.getArray(COLOR_MATRIX_KEY);
+      if (colorMatrix.size() != 20) {
+        throw new Exception(ERROR_MESSAGE_INVALID_COLOR_MATRIX);
+      }
+
+      float[] colorMatrixArray = new float[20];
+      for (int i = 0; i < colorMatrixArray.length; i++) {
+        colorMatrixArray[i] = (float)colorMatrix.getDouble(i);
+      }
+      pipeline.addStage(ImagePipeline.colorMatrix(colorMatrixArray));
+    }
+  }
+
+  /**
+   * The crop is given in upright coordinates when the image is auto oriented, it is returned in the stored ones.
+   */
+  private Rect getCropRegion(final ReadableMap data, final BitmapFactory.Options imageBounds, final int orientation) throws Exception {
+    return getSourceRegion(this.getUprightRegion(data, imageBounds, orientation), imageBounds, orientation);
+  }
+
+  /**
+   * The crop of the request clipped to the upright image, or the whole upright image without a crop.
+   */
+  private Rect getUprightRegion(final ReadableMap data, final BitmapFactory.Options imageBounds, final int orientation) throws Exception {
+    final boolean isTransposed = ImagePipeline.isTransposed(orientation);
+    final int width = isTransposed ? imageBounds.outHeight : imageBounds.outWidth;
+    final int height = isTransposed ? imageBounds.outWidth : imageBounds.outHeight;
+    if (data.hasKey(CROP_KEY) == false || data.isNull(CROP_KEY)) {
+      return new Rect(0, 0, width, height);
+    }
+
+    final ReadableMap crop = data.getMap(CROP_KEY);
+    if (crop.hasKey(CROP_WIDTH_KEY) == false || crop.hasKey(CROP_HEIGHT_KEY) == false) {
+      throw new Exception(ERROR_MESSAGE_INVALID_CROP);
+    }
+
+    final int x = crop.hasKey(CROP_X_KEY) ? (int)crop.getDouble(CROP_X_KEY) : 0;
+    final int y = crop.hasKey(CROP_Y_KEY) ? (int)crop.getDouble(CROP_Y_KEY) : 0;
+    Rect cropRegion = new Rect(x, y, x + (int)crop.getDouble(CROP_WIDTH_KEY), y + (int)crop.getDouble(CROP_HEIGHT_KEY));
+    if (cropRegion.isEmpty() || cropRegion.intersect(0, 0, width, height) == false) {
+      throw new Exception(ERROR_MESSAGE_INVALID_CROP);
+    }
+
+    return cropRegion;
+  }
+
+  /**
+   * The upright region in stored pixels for the decoder, null when it is the whole image.
+   */
+  private static Rect getSourceRegion(final Rect uprightRegion, final BitmapFactory.Options imageBounds, final int orientation) {
+    Rect sourceRegion = new Rect(uprightRegion);
+    final Matrix orientationMatrix = ImagePipeline.getOrientationMatrix(orientation, imageBounds.outWidth, imageBounds.outHeight);
+    if (orientationMatrix != null) {
+      Matrix inverseMatrix = new Matrix();
+      orientationMatrix.invert(inverseMatrix);
+      RectF mappedRegion = new RectF(uprightRegion.left, uprightRegion.top, uprightRegion.right, uprightRegion.bottom);
+      inverseMatrix.mapRect(mappedRegion);
+      mappedRegion.round(sourceRegion);
+    }
+
+    if (sourceRegion.left == 0 && sourceRegion.top == 0
+            && sourceRegion.right == imageBounds.outWidth && sourceRegion.bottom == imageBounds.outHeight) {
+      return null;
+    }
+    return sourceRegion;
   }
 
   private String requiredDataValidate(ReadableMap data) {
@@ -170,22 +1533,426 @@ public class RNImageModifierModule extends ReactContextBaseJavaModule {
     return null;
   }
 
-  private String saveToLocalStorage(Bitmap targetImage, final float imageQuality) throws Exception {
-    try {
-      final String fileName = Long.toString(new Date().getTime()).concat(".").concat(COMPRESS_FORMAT.name());
-      File saveTargetFile = new File(this.reactContext.getCacheDir(), fileName);
+  /**
+   * The file to encode into, a temp file of the output store, of the result cache when resultCacheKey
+   * is given, or next to the caller supplied outputPath.
+   */
+  private File newOutputFile(final Bitmap.CompressFormat compressFormat, final String resultCacheKey,
+                             final File outputPath) throws Exception {
+    if (outputPath != null) {
+      // written next to the target and renamed over it, so the caller never sees a partial file
+      final File parent = outputPath.getAbsoluteFile().getParentFile();
+      if (parent == null || (parent.isDirectory() == false && parent.mkdirs() == false)) {
+        throw new Exception(ERROR_MESSAGE_INVALID_OUTPUT_PATH);
+      }
+      File tempFile = new File(parent, ".".concat(outputPath.getName()).concat(".tmp"));
+      tempFile.delete();
+      return tempFile;
+    } else if (resultCacheKey != null) {
+      File tempFile = ResultCache.getInstance(this.reactContext).newTempFile(resultCacheKey);
+      tempFile.delete();
+      return tempFile;
+    }
 
-      ImageModifierUtil.saveImageFile(targetImage, saveTargetFile, COMPRESS_FORMAT, imageQuality);
-      if (saveTargetFile.exists() && saveTargetFile.canRead()) {
-        return ANDROID_URI_FILE_SCHEME.concat(saveTargetFile.getAbsolutePath());
+    File tempFile = OutputStore.getInstance(this.reactContext).newTempFile(compressFormat.name());
+    tempFile.delete();
+    return tempFile;
+  }
+
+  private String commitOutputFile(File outputFile, final String resultCacheKey, final File outputPath) throws Exception {
+    if (outputPath != null) {
+      if (outputFile.renameTo(outputPath) == false) {
+        outputFile.delete();
+        throw new Exception(ERROR_MESSAGE_FILE_SAVE_FAILED);
       }
-    } catch (Exception ex) {
-      throw ex;
+      outputFile = outputPath;
+    } else if (resultCacheKey != null) {
+      final File cachedFile = ResultCache.getInstance(this.reactContext).commit(resultCacheKey, outputFile);
+      if (cachedFile != null) {
+        outputFile = cachedFile;
+      } else {
+        // too large for the result cache, handed out as a regular output instead
+        final OutputStore outputStore = OutputStore.getInstance(this.reactContext);
+        final File storeFile = outputStore.newTempFile(resultCacheKey.substring(resultCacheKey.lastIndexOf('.') + 1));
+        if (outputFile.renameTo(storeFile) == false) {
+          outputFile.delete();
+          storeFile.delete();
+          throw new Exception(ERROR_MESSAGE_FILE_SAVE_FAILED);
+        }
+        outputFile = outputStore.commit(storeFile);
+      }
+    } else {
+      outputFile = OutputStore.getInstance(this.reactContext).commit(outputFile);
+    }
+
+    if (outputFile.exists() && outputFile.canRead()) {
+      return ANDROID_URI_FILE_SCHEME.concat(outputFile.getAbsolutePath());
     }
 
     throw new Exception(ERROR_MESSAGE_FILE_SAVE_FAILED);
   }
 
+  private interface ItemProcessor {
+    WritableMap process(int index);
+
+    void onProcessed(int index, int completed, WritableMap result);
+  }
+
+  /**
+   * Runs the items with at most `parallelism` of them queued or running at a time, highest priority first.
+   * Every item is queued on its own with its own priority, so other requests are not held up for the whole
+   * batch, and a finished item queues the next one. Resolves the results in input order once every item
+   * is done. Anything an item throws becomes its error result, so the promise always settles.
+   * Returns false when no item could be queued and the promise was rejected.
+   */
+  private boolean processItems(final int total, final int parallelism, final ItemProcessor processor, final int[] priorities,
+                               final Promise promise) {
+    if (total == 0) {
+      promise.resolve(Arguments.createArray());
+      return true;
+    }
+
+    // stable, so items of the same priority keep the input order
+    final Integer[] order = new Integer[total];
+    for (int i = 0; i < total; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer first, Integer second) {
+        return Integer.compare(priorities[second], priorities[first]);
+      }
+    });
+
+    final WritableMap[] results = new WritableMap[total];
+    final AtomicInteger nextPosition = new AtomicInteger(0);
+    final AtomicInteger completedCount = new AtomicInteger(0);
+
+    // takes the next item by priority when it runs, and queues one task for the item after it when done
+    final class ItemTask implements Runnable {
+      @Override
+      public void run() {
+        int position;
+        while ((position = nextPosition.getAndIncrement()) < total) {
+          final int index = order[position];
+          try {
+            results[index] = processor.process(index);
+          } catch (Throwable ex) {
+            results[index] = getReturnMessage(false, ex.toString());
+          }
+
+          final int completed = completedCount.incrementAndGet();
+          try {
+            processor.onProcessed(index, completed, results[index]);
+          } catch (Throwable ignore) {
+            // a lost progress event must not leave the batch unsettled
+          }
+
+          if (completed == total) {
+            WritableArray response = Arguments.createArray();
+            for (WritableMap result : results) {
+              response.pushMap(result);
+            }
+            promise.resolve(response);
+          }
+
+          final int upcomingPosition = nextPosition.get();
+          if (upcomingPosition >= total) {
+            return;
+          }
+          try {
+            workerPool.execute(new ItemTask(), priorities[order[upcomingPosition]]);
+            return;
+          } catch (RejectedExecutionException ignore) {
+            // the queue is full, this thread keeps going with the next item
+          }
+        }
+      }
+    }
+
+    int startedCount = 0;
+    for (int position = 0; position < Math.min(parallelism, total); position++) {
+      try {
+        this.workerPool.execute(new ItemTask(), priorities[order[position]]);
+        startedCount++;
+      } catch (RejectedExecutionException ex) {
+        // the started tasks take over the remaining items
+        break;
+      }
+    }
+
+    if (startedCount == 0) {
+      promise.reject(ERROR_CODE_QUEUE_FULL, "image worker queue is full.");
+      return false;
+    }
+    return true;
+  }
+
+  private ImageJob startJob(final ReadableMap data, final ReadableMap defaults) {
+    return this.startJob(data, defaults, ImageJob.DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Registers the job of a request under its jobId, or a generated one. priority and timeoutMs
+   * missing in the request are taken from defaults, the options of a batch or a prefetch.
+   */
+  private ImageJob startJob(final ReadableMap data, final ReadableMap defaults, final int defaultPriority) {
+    final String jobId = data.hasKey(JOB_ID_KEY) && data.isNull(JOB_ID_KEY) == false
+            ? data.getString(JOB_ID_KEY) : Integer.toString(JOB_ID_GENERATOR.incrementAndGet());
+    final long timeoutMs = (long)getDoubleParam(data, TIMEOUT_MS_KEY, defaults != null ? getDoubleParam(defaults, TIMEOUT_MS_KEY, 0) : 0);
+
+    final ImageJob job = new ImageJob(jobId, this.getPriority(data, this.getPriority(defaults, defaultPriority)), timeoutMs);
+    this.jobs.put(jobId, job);
+    return job;
+  }
+
+  /**
+   * The path of a file or content URI, but only the scheme and the job id of a data URI,
+   * so the payload is neither kept by the reservation nor sent back with the stats.
+   */
+  private static String getReservationLabel(final Uri imageURI, final ImageJob job) {
+    if ("data".equalsIgnoreCase(imageURI.getScheme())) {
+      return "data:".concat(job.getId());
+    }
+    return imageURI.toString();
+  }
+
+  /**
+   * A prefetch item is a modify with cache: true, a cache hit is answered without decoding.
+   */
+  private WritableMap prefetchItem(final ReadableMap item, final ImageJob job) {
+    if (getBooleanParam(item, BASE64_KEY) || (item.hasKey(OUTPUT_PATH_KEY) && item.isNull(OUTPUT_PATH_KEY) == false)) {
+      this.endJob(job);
+      return this.getReturnMessage(false, ERROR_MESSAGE_PREFETCH_OUTPUT);
+    }
+
+    WritableMap cacheItem = Arguments.createMap();
+    cacheItem.merge(item);
+    cacheItem.putBoolean(CACHE_KEY, true);
+    return this.modifyImage(cacheItem, job);
+  }
+
+  private WritableMap getPrefetchResult(final int total, final int renderedCount, final int cachedCount) {
+    WritableMap response = this.getReturnMessage(true);
+    response.putInt(COUNT_KEY, total);
+    response.putInt(RENDERED_COUNT_KEY, renderedCount);
+    response.putInt(CACHED_COUNT_KEY, cachedCount);
+    response.putInt(FAILURE_COUNT_KEY, total - renderedCount - cachedCount);
+    return response;
+  }
+
+  private void endJob(final ImageJob job) {
+    this.jobs.remove(job.getId(), job);
+    job.finish();
+  }
+
+  private int getPriority(final ReadableMap data, final int defaultPriority) {
+    return data != null ? (int)getDoubleParam(data, PRIORITY_KEY, defaultPriority) : defaultPriority;
+  }
+
+  private WritableMap getImageInfo(final String path, final List<String> exifTags) {
+    if (StringUtils.isStringValid(path) == false) {
+      return this.getReturnMessage(false, ERROR_MESSAGE_EMPTY_URI_VALUE);
+    }
+
+    try(ImageSource imageSource = ImageSource.open(this.reactContext, Uri.parse(path))) {
+      final BitmapFactory.Options imageBounds = ImageModifierUtil.getImageBounds(imageSource);
+
+      WritableMap response = this.getReturnMessage(true);
+      response.putString(PATH_KEY, path);
+      response.putInt(WIDTH_KEY, imageBounds.outWidth);
+      response.putInt(HEIGHT_KEY, imageBounds.outHeight);
+      response.putString(MIME_TYPE_KEY, imageBounds.outMimeType);
+
+      int orientation = ExifInterface.ORIENTATION_UNDEFINED;
+      WritableMap exifMap = null;
+      try {
+        final ExifInterface exifInterface = imageSource.getExifInterface();
+        orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_UNDEFINED);
+        exifMap = EXIFUtils.getAttributeMap(exifInterface, exifTags);
+      } catch (Exception ignore) {
+        // not every format carries EXIF
+      }
+
+      response.putInt(ORIENTATION_KEY, orientation);
+      response.putMap(EXIF_KEY, exifMap != null ? exifMap : Arguments.createMap());
+      return response;
+    } catch (Exception ex) {
+      WritableMap response = this.getReturnMessage(false, ex.toString());
+      response.putString(PATH_KEY, path);
+      return response;
+    }
+  }
+
+  private void sendBatchProgress(final String batchId, final int index, final int completed, final int total, final boolean isSuccess) {
+    WritableMap params = Arguments.createMap();
+    params.putString(BATCH_ID_KEY, batchId);
+    params.putInt(INDEX_KEY, index);
+    params.putInt(COMPLETED_KEY, completed);
+    params.putInt(TOTAL_KEY, total);
+    params.putBoolean(SUCCESS_KEY, isSuccess);
+
+    this.sendEvent(BATCH_PROGRESS_EVENT, params);
+  }
+
+  private void sendChunk(final String requestId, final int index, final String chunk) {
+    WritableMap params = Arguments.createMap();
+    params.putString(REQUEST_ID_KEY, requestId);
+    params.putInt(INDEX_KEY, index);
+    params.putString(DATA_KEY, chunk);
+
+    this.sendEvent(CHUNK_EVENT, params);
+  }
+
+  private void sendEvent(final String eventName, final WritableMap params) {
+    this.getReactApplicationContext()
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(eventName, params);
+  }
+
+  /**
+   * The EXIF orientation of the source with autoOrient, otherwise ORIENTATION_NORMAL.
+   */
+  private static int getAutoOrientation(final ReadableMap data, final ImageSource imageSource) {
+    if (getBooleanParam(data, AUTO_ORIENT_KEY) == false) {
+      return ExifInterface.ORIENTATION_NORMAL;
+    }
+
+    try {
+      return EXIFUtils.getOrientation(imageSource.getExifInterface());
+    } catch (Exception ignore) {
+      // not every format carries EXIF
+      return ExifInterface.ORIENTATION_NORMAL;
+    }
+  }
+
+  /**
+   * keepExif is true for the default tags or an array of tag names, null when not requested.
+   */
+  private static List<String> getKeptExifTags(final ReadableMap data) {
+    if (data.hasKey(KEEP_EXIF_KEY) == false || data.isNull(KEEP_EXIF_KEY)) {
+      return null;
+    } else if (data.getType(KEEP_EXIF_KEY) == ReadableType.Array) {
+      final ReadableArray tagNames = data.getArray(KEEP_EXIF_KEY);
+      List<String> keptTags = new ArrayList<>();
+      for (int i = 0; i < tagNames.size(); i++) {
+        keptTags.add(tagNames.getString(i));
+      }
+      return keptTags;
+    }
+    return getBooleanParam(data, KEEP_EXIF_KEY) ? EXIFUtils.DEFAULT_KEPT_TAGS : null;
+  }
+
+  /**
+   * Copies the kept tags of the source into a JPEG output. An auto oriented output is marked upright,
+   * otherwise it keeps the orientation of the source.
+   */
+  private static void writeExif(final ImageSource imageSource, final File outputFile, final List<String> keptExifTags,
+                                final boolean isAutoOriented) throws Exception {
+    ExifInterface sourceExif = null;
+    try {
+      sourceExif = imageSource.getExifInterface();
+    } catch (Exception ignore) {
+      // a source without EXIF only gets the orientation
+    }
+
+    final int orientation = isAutoOriented || sourceExif == null ? ExifInterface.ORIENTATION_NORMAL : EXIFUtils.getOrientation(sourceExif);
+    EXIFUtils.writeAttributes(sourceExif, outputFile, keptExifTags, orientation);
+  }
+
+  private void putEXIF(WritableMap response, final ImageSource imageSource, final ReadableMap data) throws Exception {
+    final ExifInterface exifInterface = imageSource.getExifInterface();
+    if (data.hasKey(EXIF_FORMAT_KEY) && EXIF_FORMAT_STRING.equalsIgnoreCase(data.getString(EXIF_FORMAT_KEY))) {
+      response.putString(EXIF_KEY, EXIFUtils.getEXIFJsonString(exifInterface));
+    } else {
+      response.putMap(EXIF_KEY, EXIFUtils.getEXIFMap(exifInterface));
+    }
+  }
+
+  /**
+   * Every parameter that changes the encoded result, in a fixed order and a normalized form, for the result cache key.
+   */
+  private String getNormalizedParams(final ReadableMap data, final Bitmap.CompressFormat compressFormat) {
+    final Map<String, Object> params = data.toHashMap();
+
+    StringBuilder normalizedParams = new StringBuilder(compressFormat.name());
+    for (String key : RESULT_CACHE_PARAM_KEYS) {
+      normalizedParams.append(';').append(key).append('=').append(normalizeParamValue(params.get(key)));
+    }
+    return normalizedParams.toString();
+  }
+
+  private static String normalizeParamValue(final Object value) {
+    if (value == null) {
+      return "";
+    } else if (value instanceof String) {
+      final String stringValue = ((String)value).trim().toLowerCase();
+      try {
+        return Double.toString(Double.parseDouble(stringValue));
+      } catch (NumberFormatException ignore) {
+        return stringValue;
+      }
+    } else if (value instanceof Number) {
+      return Double.toString(((Number)value).doubleValue());
+    }
+    return value.toString();
+  }
+
+  /**
+   * The caller supplied output file, a plain path or a file URI, or null when not requested.
+   */
+  private static File getOutputPath(final ReadableMap data) throws Exception {
+    if (data.hasKey(OUTPUT_PATH_KEY) == false || data.isNull(OUTPUT_PATH_KEY)) {
+      return null;
+    }
+
+    final Uri outputURI = Uri.parse(data.getString(OUTPUT_PATH_KEY));
+    final String scheme = outputURI.getScheme();
+    if ((scheme != null && scheme.equalsIgnoreCase("file") == false) || StringUtils.isStringValid(outputURI.getPath()) == false) {
+      throw new Exception(ERROR_MESSAGE_INVALID_OUTPUT_PATH);
+    }
+    return new File(outputURI.getPath());
+  }
+
+  private static Bitmap.CompressFormat getCompressFormat(final ReadableMap data) throws Exception {
+    if (data.hasKey(FORMAT_KEY) == false || data.isNull(FORMAT_KEY)) {
+      return DEFAULT_COMPRESS_FORMAT;
+    }
+
+    final String format = data.getString(FORMAT_KEY).trim().toUpperCase();
+    if (format.equals("JPG")) {
+      return Bitmap.CompressFormat.JPEG;
+    }
+    try {
+      return Bitmap.CompressFormat.valueOf(format);
+    } catch (IllegalArgumentException ex) {
+      throw new Exception(ERROR_MESSAGE_INVALID_FORMAT);
+    }
+  }
+
+  private static double getDoubleParam(final ReadableMap data, final String key, final double defaultValue) {
+    if (data.hasKey(key) == false || data.isNull(key)) {
+      return defaultValue;
+    } else if (data.getType(key) == ReadableType.Number) {
+      return data.getDouble(key);
+    }
+
+    try {
+      return Double.parseDouble(data.getString(key));
+    } catch (NumberFormatException ignore) {
+      return defaultValue;
+    }
+  }
+
+  private static boolean getBooleanParam(final ReadableMap data, final String key) {
+    if (data.hasKey(key) == false || data.isNull(key)) {
+      return false;
+    } else if (data.getType(key) == ReadableType.Boolean) {
+      return data.getBoolean(key);
+    }
+    return Boolean.parseBoolean(data.getString(key));
+  }
+
   private WritableMap getReturnMessage(final boolean isSuccess, final String errorMessage) {
     WritableMap response = this.getReturnMessage(isSuccess);
     if (StringUtils.isStringValid(errorMessage)) {
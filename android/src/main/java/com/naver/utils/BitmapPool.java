@@ -0,0 +1,227 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Size bucketed pool of mutable bitmaps, bounded by a byte budget with LRU eviction.
+ * A bitmap is reused through Bitmap.reconfigure, so any pooled bitmap whose allocation
+ * is large enough can serve a request of a different size.
+ */
+public class BitmapPool {
+
+    private static final long DEFAULT_MAX_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 8, 64L * 1024 * 1024);
+
+    private static final BitmapPool INSTANCE = new BitmapPool(DEFAULT_MAX_BYTES);
+
+    public static BitmapPool getInstance() {
+        return INSTANCE;
+    }
+
+    // bucket index is ceil(log2(allocation bytes))
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> lruOrder = new LinkedHashSet<>();
+
+    private long maxBytes;
+    private long currentBytes = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public BitmapPool(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a bitmap of the requested size cleared to transparent, from the pool when possible.
+     */
+    public Bitmap get(final int width, final int height, final Bitmap.Config config) {
+        Bitmap bitmap = this.getDirty(width, height, config);
+        if (bitmap != null) {
+            // a pooled decoded JPEG keeps its opaque state through reconfigure, transparent would erase to black
+            bitmap.setHasAlpha(true);
+            bitmap.setPremultiplied(true);
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Returns a pooled bitmap reconfigured to the requested size with undefined pixels, or null on a miss.
+     * Suitable for BitmapFactory.Options.inBitmap, where the decoder overwrites every pixel.
+     */
+    public synchronized Bitmap getDirty(final int width, final int height, final Bitmap.Config config) {
+        final long requiredBytes = (long)width * height * getBytesPerPixel(config);
+        if (requiredBytes <= 0) {
+            this.missCount++;
+            return null;
+        }
+
+        final int bucket = getBucket(requiredBytes);
+        // Only look one bucket up, so a huge bitmap is not spent on a tiny request.
+        for (Map.Entry<Integer, ArrayDeque<Bitmap>> entry : this.buckets.subMap(bucket, true, bucket + 1, true).entrySet()) {
+            Iterator<Bitmap> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getAllocationByteCount() < requiredBytes) {
+                    continue;
+                }
+
+                iterator.remove();
+                if (entry.getValue().isEmpty()) {
+                    this.buckets.remove(entry.getKey());
+                }
+                this.lruOrder.remove(bitmap);
+                this.currentBytes -= bitmap.getAllocationByteCount();
+
+                try {
+                    bitmap.reconfigure(width, height, config);
+                } catch (IllegalArgumentException ex) {
+                    bitmap.recycle();
+                    this.missCount++;
+                    return null;
+                }
+
+                this.hitCount++;
+                return bitmap;
+            }
+        }
+
+        this.missCount++;
+        return null;
+    }
+
+    /**
+     * Hands a bitmap back to the pool. The caller must not touch it afterwards.
+     */
+    public synchronized void put(final Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || this.lruOrder.contains(bitmap)) {
+            return;
+        }
+
+        final int allocationBytes = bitmap.getAllocationByteCount();
+        if (bitmap.isMutable() == false || allocationBytes > this.maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        final int bucket = getBucket(allocationBytes);
+        ArrayDeque<Bitmap> bucketQueue = this.buckets.get(bucket);
+        if (bucketQueue == null) {
+            bucketQueue = new ArrayDeque<>();
+            this.buckets.put(bucket, bucketQueue);
+        }
+        bucketQueue.addLast(bitmap);
+        this.lruOrder.add(bitmap);
+        this.currentBytes += allocationBytes;
+
+        this.trimToSize(this.maxBytes);
+    }
+
+    public synchronized void trimToSize(final long targetBytes) {
+        Iterator<Bitmap> iterator = this.lruOrder.iterator();
+        while (this.currentBytes > targetBytes && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+
+            final int bucket = getBucket(bitmap.getAllocationByteCount());
+            ArrayDeque<Bitmap> bucketQueue = this.buckets.get(bucket);
+            if (bucketQueue != null) {
+                bucketQueue.remove(bitmap);
+                if (bucketQueue.isEmpty()) {
+                    this.buckets.remove(bucket);
+                }
+            }
+
+            this.currentBytes -= bitmap.getAllocationByteCount();
+            this.evictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    public void clear() {
+        this.trimToSize(0);
+    }
+
+    public synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.trimToSize(this.maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+
+    public synchronized int getCount() {
+        return this.lruOrder.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public static int getBytesPerPixel(final Bitmap.Config config) {
+        if (config == null) {
+            return 4;
+        }
+
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            case RGBA_F16:
+                return 8;
+            default:
+                return 4;
+        }
+    }
+
+    private static int getBucket(final long bytes) {
+        return 64 - Long.numberOfLeadingZeros(Math.max(1, bytes) - 1);
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Hands the written bytes to a listener in chunks of a fixed size, the last one may be shorter.
+ * Only one chunk is buffered at a time. The chunk size is rounded up to a multiple of 3,
+ * so every chunk can be base64 encoded on its own and the encoded chunks simply concatenate.
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+    public interface ChunkListener {
+        void onChunk(byte[] chunk, int length, int index) throws IOException;
+    }
+
+    private final byte[] buffer;
+    private final ChunkListener listener;
+
+    private int count = 0;
+    private int chunkCount = 0;
+    private long byteLength = 0;
+    private boolean isClosed = false;
+
+    public ChunkedOutputStream(final int chunkSize, final ChunkListener listener) {
+        final int size = Math.max(3, chunkSize);
+        this.buffer = new byte[(size + 2) / 3 * 3];
+        this.listener = listener;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.ensureOpen();
+        this.buffer[this.count++] = (byte)b;
+        this.byteLength++;
+        if (this.count == this.buffer.length) {
+            this.emit();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        this.ensureOpen();
+        while (len > 0) {
+            final int length = Math.min(len, this.buffer.length - this.count);
+            System.arraycopy(b, off, this.buffer, this.count, length);
+            this.count += length;
+            this.byteLength += length;
+            off += length;
+            len -= length;
+            if (this.count == this.buffer.length) {
+                this.emit();
+            }
+        }
+    }
+
+    /**
+     * Emits the remaining bytes as the last chunk.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.isClosed) {
+            return;
+        }
+        this.isClosed = true;
+
+        if (this.count > 0) {
+            this.emit();
+        }
+    }
+
+    public int getChunkCount() {
+        return this.chunkCount;
+    }
+
+    public long getByteLength() {
+        return this.byteLength;
+    }
+
+    private void emit() throws IOException {
+        this.listener.onChunk(this.buffer, this.count, this.chunkCount++);
+        this.count = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.isClosed) {
+            throw new IOException("stream is closed.");
+        }
+    }
+}
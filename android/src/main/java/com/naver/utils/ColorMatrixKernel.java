@@ -0,0 +1,214 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies a 4x5 color matrix to unpremultiplied ARGB pixels in fixed point.
+ * Every pixel is computed on its own with integer math, so the result does not depend
+ * on how the rows are split across threads. Plain Java, no Android types.
+ */
+public class ColorMatrixKernel {
+
+    /**
+     * Row access to an image, read into and written from an int[] stripe of `rows` rows.
+     */
+    public interface PixelRows {
+        void read(int[] pixels, int top, int rows);
+        void write(int[] pixels, int top, int rows);
+    }
+
+    private static final int SHIFT = 12;
+    private static final int ONE = 1 << SHIFT;
+    private static final int HALF = ONE >> 1;
+
+    // keeps 4 channels * 255 * coefficient in int range
+    private static final float MAX_COEFFICIENT = 256.0f;
+    private static final float MAX_OFFSET = 255.0f * MAX_COEFFICIENT;
+
+    // pixels handled by one task, about 256KB of int[]
+    private static final int STRIPE_PIXELS = 64 * 1024;
+
+    private static final float LUMA_R = 0.213f;
+    private static final float LUMA_G = 0.715f;
+    private static final float LUMA_B = 0.072f;
+
+    private final int[] coefficients = new int[20];
+    private final boolean isAlphaIdentity;
+
+    public ColorMatrixKernel(final float[] colorMatrix) {
+        if (colorMatrix == null || colorMatrix.length != 20) {
+            throw new IllegalArgumentException("color matrix must have 20 values.");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            final float limit = (i % 5 == 4) ? MAX_OFFSET : MAX_COEFFICIENT;
+            final float value = Math.max(-limit, Math.min(limit, colorMatrix[i]));
+            this.coefficients[i] = Math.round(value * ONE);
+        }
+        this.isAlphaIdentity = this.coefficients[15] == 0 && this.coefficients[16] == 0 && this.coefficients[17] == 0
+                && this.coefficients[18] == ONE && this.coefficients[19] == 0;
+    }
+
+    /**
+     * Transforms pixels[offset, offset + length) in place.
+     */
+    public void apply(final int[] pixels, final int offset, final int length) {
+        final int[] m = this.coefficients;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final int color = pixels[i];
+            final int a = color >>> 24;
+            final int r = (color >> 16) & 0xFF;
+            final int g = (color >> 8) & 0xFF;
+            final int b = color & 0xFF;
+
+            final int outR = clamp((m[0] * r + m[1] * g + m[2] * b + m[3] * a + m[4] + HALF) >> SHIFT);
+            final int outG = clamp((m[5] * r + m[6] * g + m[7] * b + m[8] * a + m[9] + HALF) >> SHIFT);
+            final int outB = clamp((m[10] * r + m[11] * g + m[12] * b + m[13] * a + m[14] + HALF) >> SHIFT);
+            final int outA = this.isAlphaIdentity
+                    ? a : clamp((m[15] * r + m[16] * g + m[17] * b + m[18] * a + m[19] + HALF) >> SHIFT);
+
+            pixels[i] = (outA << 24) | (outR << 16) | (outG << 8) | outB;
+        }
+    }
+
+    /**
+     * Transforms a width x height image in row stripes split across the pool.
+     */
+    public void apply(final PixelRows image, final int width, final int height, final ForkJoinPool pool) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        final int stripeRows = Math.max(1, STRIPE_PIXELS / width);
+        pool.invoke(new StripeTask(image, width, 0, height, stripeRows));
+    }
+
+    /**
+     * Transforms a packed width x height int[] image in place.
+     */
+    public void apply(final int[] pixels, final int width, final int height, final ForkJoinPool pool) {
+        this.apply(new PixelRows() {
+            @Override
+            public void read(int[] stripe, int top, int rows) {
+                System.arraycopy(pixels, top * width, stripe, 0, rows * width);
+            }
+
+            @Override
+            public void write(int[] stripe, int top, int rows) {
+                System.arraycopy(stripe, 0, pixels, top * width, rows * width);
+            }
+        }, width, height, pool);
+    }
+
+    private static int clamp(final int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private class StripeTask extends RecursiveAction {
+        private final PixelRows image;
+        private final int width;
+        private final int top;
+        private final int bottom;
+        private final int stripeRows;
+
+        StripeTask(final PixelRows image, final int width, final int top, final int bottom, final int stripeRows) {
+            this.image = image;
+            this.width = width;
+            this.top = top;
+            this.bottom = bottom;
+            this.stripeRows = stripeRows;
+        }
+
+        @Override
+        protected void compute() {
+            final int rows = this.bottom - this.top;
+            if (rows > this.stripeRows) {
+                final int middle = this.top + rows / 2;
+                invokeAll(new StripeTask(this.image, this.width, this.top, middle, this.stripeRows),
+                        new StripeTask(this.image, this.width, middle, this.bottom, this.stripeRows));
+                return;
+            }
+
+            final int[] stripe = new int[rows * this.width];
+            this.image.read(stripe, this.top, rows);
+            ColorMatrixKernel.this.apply(stripe, 0, stripe.length);
+            this.image.write(stripe, this.top, rows);
+        }
+    }
+
+    public static float[] sepia() {
+        return new float[]{
+                0.393f, 0.769f, 0.189f, 0, 0,
+                0.349f, 0.686f, 0.168f, 0, 0,
+                0.272f, 0.534f, 0.131f, 0, 0,
+                0, 0, 0, 1, 0,
+        };
+    }
+
+    /**
+     * Adds value * 255 to every color channel, value between -1.0 and 1.0.
+     */
+    public static float[] brightness(final float value) {
+        final float offset = value * 255.0f;
+        return new float[]{
+                1, 0, 0, 0, offset,
+                0, 1, 0, 0, offset,
+                0, 0, 1, 0, offset,
+                0, 0, 0, 1, 0,
+        };
+    }
+
+    /**
+     * Scales the colors around the middle gray, 1.0 keeps the image.
+     */
+    public static float[] contrast(final float value) {
+        final float offset = 128.0f * (1.0f - value);
+        return new float[]{
+                value, 0, 0, 0, offset,
+                0, value, 0, 0, offset,
+                0, 0, value, 0, offset,
+                0, 0, 0, 1, 0,
+        };
+    }
+
+    /**
+     * 0.0 is grayscale and 1.0 keeps the image, same weights as android.graphics.ColorMatrix.setSaturation.
+     */
+    public static float[] saturation(final float value) {
+        final float invert = 1.0f - value;
+        final float r = LUMA_R * invert;
+        final float g = LUMA_G * invert;
+        final float b = LUMA_B * invert;
+        return new float[]{
+                r + value, g, b, 0, 0,
+                r, g + value, b, 0, 0,
+                r, g, b + value, 0, 0,
+                0, 0, 0, 1, 0,
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes the base64 payload of a data URI while it is read, straight from the URI string.
+ * The payload is never copied into a substring or a full size byte array, so a decode of a large
+ * data URI only holds the string itself and the bitmap. Whitespace is skipped, percent escapes,
+ * the URL safe alphabet and a missing padding are accepted. Mark and reset only save the position.
+ */
+class DataURIInputStream extends InputStream {
+
+    private static final int SKIP = -2;
+    private static final int INVALID = -1;
+
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, INVALID);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['_'] = 63;
+        DECODE_TABLE[' '] = SKIP;
+        DECODE_TABLE['\t'] = SKIP;
+        DECODE_TABLE['\r'] = SKIP;
+        DECODE_TABLE['\n'] = SKIP;
+    }
+
+    private final CharSequence source;
+    private final int end;
+
+    private int position;
+    private int bits = 0;
+    private int bitCount = 0;
+
+    private int markPosition;
+    private int markBits = 0;
+    private int markBitCount = 0;
+
+    private final byte[] singleByte = new byte[1];
+
+    DataURIInputStream(final CharSequence source, final int start, final int end) {
+        this.source = source;
+        this.position = start;
+        this.end = end;
+        this.markPosition = start;
+    }
+
+    /**
+     * Decoded size of the payload, exact unless it contains whitespace or percent escapes.
+     */
+    static long getDecodedLength(final CharSequence source, final int start, final int end) {
+        int length = end - start;
+        while (length > 0 && source.charAt(start + length - 1) == '=') {
+            length--;
+        }
+        return (long)length * 3 / 4;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return this.read(this.singleByte, 0, 1) == -1 ? -1 : this.singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int count = 0;
+        while (count < len) {
+            if (this.bitCount >= 8) {
+                this.bitCount -= 8;
+                b[off + count++] = (byte)(this.bits >> this.bitCount);
+                continue;
+            }
+            if (this.position >= this.end) {
+                break;
+            }
+
+            int c = this.source.charAt(this.position++);
+            if (c == '%') {
+                c = this.readEscape();
+            }
+            if (c == '=') {
+                // padding, nothing follows
+                this.position = this.end;
+                break;
+            }
+
+            final int value = c < DECODE_TABLE.length ? DECODE_TABLE[c] : INVALID;
+            if (value == INVALID) {
+                throw new IOException("data URI has an invalid base64 character.");
+            } else if (value != SKIP) {
+                this.bits = ((this.bits << 6) | value) & 0xFFFFFF;
+                this.bitCount += 6;
+            }
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public int available() {
+        return this.bitCount / 8;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(final int readLimit) {
+        this.markPosition = this.position;
+        this.markBits = this.bits;
+        this.markBitCount = this.bitCount;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.position = this.markPosition;
+        this.bits = this.markBits;
+        this.bitCount = this.markBitCount;
+    }
+
+    private int readEscape() throws IOException {
+        if (this.position + 2 > this.end) {
+            throw new IOException("data URI has an incomplete percent escape.");
+        }
+        final int high = Character.digit(this.source.charAt(this.position), 16);
+        final int low = Character.digit(this.source.charAt(this.position + 1), 16);
+        if (high == -1 || low == -1) {
+            throw new IOException("data URI has an invalid percent escape.");
+        }
+        this.position += 2;
+        return (high << 4) | low;
+    }
+}
@@ -25,177 +25,239 @@ package com.naver.utils;
 
 import android.media.ExifInterface;
 
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
 import com.google.gson.Gson;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class EXIFUtils {
 
-    private static final Map<Class, List<String>> EXIF_VALUE_KEYS = new HashMap<>();
-    static {
-        // Double
-        List<String> doubleType = new ArrayList<>();
-        doubleType.add(ExifInterface.TAG_APERTURE_VALUE);
-        doubleType.add(ExifInterface.TAG_BRIGHTNESS_VALUE);
-        doubleType.add(ExifInterface.TAG_EXPOSURE_BIAS_VALUE);
-        doubleType.add(ExifInterface.TAG_EXPOSURE_TIME);
-        doubleType.add(ExifInterface.TAG_F_NUMBER);
-        doubleType.add(ExifInterface.TAG_FOCAL_LENGTH);
-        doubleType.add(ExifInterface.TAG_SHUTTER_SPEED_VALUE);
-
-        EXIF_VALUE_KEYS.put(Double.class, doubleType);
-
-        // Integer
-        List<String> intType = new ArrayList<>();
-        intType.add(ExifInterface.TAG_COLOR_SPACE);
-        intType.add(ExifInterface.TAG_EXPOSURE_MODE);
-        intType.add(ExifInterface.TAG_EXPOSURE_PROGRAM);
-        intType.add(ExifInterface.TAG_FLASH);
-        intType.add(ExifInterface.TAG_FOCAL_LENGTH_IN_35MM_FILM);
-        intType.add(ExifInterface.TAG_ISO_SPEED_RATINGS);
-        intType.add(ExifInterface.TAG_METERING_MODE);
-        intType.add(ExifInterface.TAG_PIXEL_X_DIMENSION);
-        intType.add(ExifInterface.TAG_PIXEL_Y_DIMENSION);
-        intType.add(ExifInterface.TAG_SCENE_CAPTURE_TYPE);
-        intType.add(ExifInterface.TAG_SENSING_METHOD);
-        intType.add(ExifInterface.TAG_SUBJECT_AREA);
-        intType.add(ExifInterface.TAG_WHITE_BALANCE);
-        intType.add(ExifInterface.TAG_SCENE_TYPE);
-
-        EXIF_VALUE_KEYS.put(Integer.class, intType);
-
-        // String
-        List<String> stringType = new ArrayList<>();
-//        stringType.add(ExifInterface.TAG_COMPONENTS_CONFIGURATION);
-        stringType.add(ExifInterface.TAG_DATETIME_DIGITIZED);
-        stringType.add(ExifInterface.TAG_DATETIME_ORIGINAL);
-        stringType.add(ExifInterface.TAG_EXIF_VERSION);
-        stringType.add(ExifInterface.TAG_FLASHPIX_VERSION);
-        stringType.add(ExifInterface.TAG_SUBSEC_TIME_DIGITIZED);
-        stringType.add(ExifInterface.TAG_SUBSEC_TIME_ORIGINAL);
-
-        EXIF_VALUE_KEYS.put(String.class, stringType);
-    };
-
-    private static final Map<Class, List<String>> TIFF_VALUE_KEYS = new HashMap<>();
-    static {
-        // Double
-        List<String> doubleType = new ArrayList<>();
-        doubleType.add(ExifInterface.TAG_X_RESOLUTION);
-        doubleType.add(ExifInterface.TAG_Y_RESOLUTION);
+    private static final String EXIF_KEY = "EXIF";
+    private static final String GPS_KEY = "GPS";
+    private static final String TIFF_KEY = "TIFF";
 
-        TIFF_VALUE_KEYS.put(Double.class, doubleType);
+    private static final int TYPE_STRING = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_DOUBLE = 2;
 
-        // Integer
-        List<String> intType = new ArrayList<>();
-        intType.add(ExifInterface.TAG_RESOLUTION_UNIT);
+    private static final class Tag {
+        final String group;
+        final String name;
+        final int type;
 
-        TIFF_VALUE_KEYS.put(Integer.class, intType);
+        Tag(final String group, final String name, final int type) {
+            this.group = group;
+            this.name = name;
+            this.type = type;
+        }
+    }
 
-        // String
-        List<String> stringType = new ArrayList<>();
-        stringType.add(ExifInterface.TAG_DATETIME);
-        stringType.add(ExifInterface.TAG_MAKE);
-        stringType.add(ExifInterface.TAG_MODEL);
-        stringType.add(ExifInterface.TAG_SOFTWARE);
+    // Flat table in output order, every tag with its group and value type.
+    private static final Tag[] TAGS = new Tag[] {
+            // EXIF
+            new Tag(EXIF_KEY, ExifInterface.TAG_APERTURE_VALUE, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_BRIGHTNESS_VALUE, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_EXPOSURE_BIAS_VALUE, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_EXPOSURE_TIME, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_F_NUMBER, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_FOCAL_LENGTH, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SHUTTER_SPEED_VALUE, TYPE_DOUBLE),
+            new Tag(EXIF_KEY, ExifInterface.TAG_COLOR_SPACE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_EXPOSURE_MODE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_EXPOSURE_PROGRAM, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_FLASH, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_FOCAL_LENGTH_IN_35MM_FILM, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_ISO_SPEED_RATINGS, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_METERING_MODE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_PIXEL_X_DIMENSION, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_PIXEL_Y_DIMENSION, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SCENE_CAPTURE_TYPE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SENSING_METHOD, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SUBJECT_AREA, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_WHITE_BALANCE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SCENE_TYPE, TYPE_INT),
+            new Tag(EXIF_KEY, ExifInterface.TAG_DATETIME_DIGITIZED, TYPE_STRING),
+            new Tag(EXIF_KEY, ExifInterface.TAG_DATETIME_ORIGINAL, TYPE_STRING),
+            new Tag(EXIF_KEY, ExifInterface.TAG_EXIF_VERSION, TYPE_STRING),
+            new Tag(EXIF_KEY, ExifInterface.TAG_FLASHPIX_VERSION, TYPE_STRING),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SUBSEC_TIME_DIGITIZED, TYPE_STRING),
+            new Tag(EXIF_KEY, ExifInterface.TAG_SUBSEC_TIME_ORIGINAL, TYPE_STRING),
+            // TIFF
+            new Tag(TIFF_KEY, ExifInterface.TAG_X_RESOLUTION, TYPE_DOUBLE),
+            new Tag(TIFF_KEY, ExifInterface.TAG_Y_RESOLUTION, TYPE_DOUBLE),
+            new Tag(TIFF_KEY, ExifInterface.TAG_RESOLUTION_UNIT, TYPE_INT),
+            new Tag(TIFF_KEY, ExifInterface.TAG_DATETIME, TYPE_STRING),
+            new Tag(TIFF_KEY, ExifInterface.TAG_MAKE, TYPE_STRING),
+            new Tag(TIFF_KEY, ExifInterface.TAG_MODEL, TYPE_STRING),
+            new Tag(TIFF_KEY, ExifInterface.TAG_SOFTWARE, TYPE_STRING),
+            // GPS
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_BEARING, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_DISTANCE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_LATITUDE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_LONGITUDE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DOP, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_IMG_DIRECTION, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_LATITUDE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_LONGITUDE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_SPEED, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_TRACK, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_ALTITUDE, TYPE_DOUBLE),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_ALTITUDE_REF, TYPE_INT),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DIFFERENTIAL, TYPE_INT),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_AREA_INFORMATION, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DATESTAMP, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_BEARING_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_DISTANCE_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_LATITUDE_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_DEST_LONGITUDE_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_IMG_DIRECTION_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_LATITUDE_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_LONGITUDE_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_MAP_DATUM, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_MEASURE_MODE, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_PROCESSING_METHOD, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_SATELLITES, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_SPEED_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_STATUS, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_TIMESTAMP, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_TRACK_REF, TYPE_STRING),
+            new Tag(GPS_KEY, ExifInterface.TAG_GPS_VERSION_ID, TYPE_STRING)
+    };
 
-        TIFF_VALUE_KEYS.put(String.class, stringType);
-    }
+    // copied into an output by keepExif: true, size and orientation tags are never copied
+    public static final List<String> DEFAULT_KEPT_TAGS = Collections.unmodifiableList(Arrays.asList(
+            ExifInterface.TAG_DATETIME, ExifInterface.TAG_DATETIME_ORIGINAL, ExifInterface.TAG_DATETIME_DIGITIZED,
+            ExifInterface.TAG_MAKE, ExifInterface.TAG_MODEL, ExifInterface.TAG_EXPOSURE_TIME, ExifInterface.TAG_F_NUMBER,
+            ExifInterface.TAG_ISO_SPEED_RATINGS, ExifInterface.TAG_FOCAL_LENGTH, ExifInterface.TAG_FLASH,
+            ExifInterface.TAG_WHITE_BALANCE, ExifInterface.TAG_GPS_LATITUDE, ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE, ExifInterface.TAG_GPS_LONGITUDE_REF, ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF, ExifInterface.TAG_GPS_DATESTAMP, ExifInterface.TAG_GPS_TIMESTAMP));
 
-    private static final Map<Class, List<String>> GPS_VALUE_KEYS = new HashMap<>();
-    static {
-        // Double
-        List<String> doubleType = new ArrayList<>();
-        doubleType.add(ExifInterface.TAG_GPS_DEST_BEARING);
-        doubleType.add(ExifInterface.TAG_GPS_DEST_DISTANCE);
-        doubleType.add(ExifInterface.TAG_GPS_DEST_LATITUDE);
-        doubleType.add(ExifInterface.TAG_GPS_DEST_LONGITUDE);
-        doubleType.add(ExifInterface.TAG_GPS_DOP);
-        doubleType.add(ExifInterface.TAG_GPS_IMG_DIRECTION);
-        doubleType.add(ExifInterface.TAG_GPS_LATITUDE);
-        doubleType.add(ExifInterface.TAG_GPS_LONGITUDE);
-        doubleType.add(ExifInterface.TAG_GPS_SPEED);
-        doubleType.add(ExifInterface.TAG_GPS_TRACK);
-        doubleType.add(ExifInterface.TAG_GPS_ALTITUDE);
-
-        GPS_VALUE_KEYS.put(Double.class, doubleType);
-
-        // Integer
-        List<String> intType = new ArrayList<>();
-        intType.add(ExifInterface.TAG_GPS_ALTITUDE_REF);
-        intType.add(ExifInterface.TAG_GPS_DIFFERENTIAL);
-
-        GPS_VALUE_KEYS.put(Integer.class, intType);
-
-        // String
-        List<String> stringType = new ArrayList<>();
-        stringType.add(ExifInterface.TAG_GPS_AREA_INFORMATION);
-        stringType.add(ExifInterface.TAG_GPS_DATESTAMP);
-        stringType.add(ExifInterface.TAG_GPS_DEST_BEARING_REF);
-        stringType.add(ExifInterface.TAG_GPS_DEST_DISTANCE_REF);
-        stringType.add(ExifInterface.TAG_GPS_DEST_LATITUDE_REF);
-        stringType.add(ExifInterface.TAG_GPS_DEST_LONGITUDE_REF);
-        stringType.add(ExifInterface.TAG_GPS_IMG_DIRECTION_REF);
-        stringType.add(ExifInterface.TAG_GPS_LATITUDE_REF);
-        stringType.add(ExifInterface.TAG_GPS_LONGITUDE_REF);
-        stringType.add(ExifInterface.TAG_GPS_MAP_DATUM);
-        stringType.add(ExifInterface.TAG_GPS_MEASURE_MODE);
-        stringType.add(ExifInterface.TAG_GPS_PROCESSING_METHOD);
-        stringType.add(ExifInterface.TAG_GPS_SATELLITES);
-        stringType.add(ExifInterface.TAG_GPS_SPEED_REF);
-        stringType.add(ExifInterface.TAG_GPS_STATUS);
-        stringType.add(ExifInterface.TAG_GPS_TIMESTAMP);
-        stringType.add(ExifInterface.TAG_GPS_TRACK_REF);
-        stringType.add(ExifInterface.TAG_GPS_VERSION_ID);
-
-        GPS_VALUE_KEYS.put(String.class, stringType);
-    }
+    private static final List<String> NEVER_KEPT_TAGS = Collections.unmodifiableList(Arrays.asList(
+            ExifInterface.TAG_ORIENTATION, ExifInterface.TAG_IMAGE_WIDTH, ExifInterface.TAG_IMAGE_LENGTH,
+            ExifInterface.TAG_PIXEL_X_DIMENSION, ExifInterface.TAG_PIXEL_Y_DIMENSION));
 
     private static final Gson GSON_OBJ = new Gson();
 
-    private static final String EXIF_KEY = "EXIF";
-    private static final String GPS_KEY = "GPS";
-    private static final String TIFF_KEY = "TIFF";
+    /**
+     * The EXIF orientation, ORIENTATION_NORMAL when the tag is missing or unknown.
+     */
+    public static int getOrientation(final ExifInterface originalExif) {
+        final int orientation = originalExif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        if (orientation < ExifInterface.ORIENTATION_NORMAL || orientation > ExifInterface.ORIENTATION_ROTATE_270) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+        return orientation;
+    }
+
+    /**
+     * Copies the given tags of originalExif, when there is one, into the EXIF of a JPEG file and sets its orientation.
+     * Only the metadata of the file is rewritten, the image data is kept as it is.
+     */
+    public static void writeAttributes(final ExifInterface originalExif, final File jpegFile,
+                                       final List<String> tagNames, final int orientation) throws IOException {
+        ExifInterface outputExif = new ExifInterface(jpegFile.getAbsolutePath());
+        if (originalExif != null) {
+            for (String tagName : tagNames) {
+                final String value = originalExif.getAttribute(tagName);
+                if (value != null && NEVER_KEPT_TAGS.contains(tagName) == false) {
+                    outputExif.setAttribute(tagName, value);
+                }
+            }
+        }
+        outputExif.setAttribute(ExifInterface.TAG_ORIENTATION, Integer.toString(orientation));
+        outputExif.saveAttributes();
+    }
 
     public static String getEXIFJsonString(final InputStream inputStream) throws IOException {
-        ExifInterface originalExif = new ExifInterface(inputStream);
+        return getEXIFJsonString(new ExifInterface(inputStream));
+    }
 
-        Map<String, Object> resultMpa = new HashMap<>();
-        resultMpa.put(EXIF_KEY, getMetaInfoMap(originalExif, EXIF_VALUE_KEYS));
-        resultMpa.put(GPS_KEY, getMetaInfoMap(originalExif, GPS_VALUE_KEYS));
-        resultMpa.put(TIFF_KEY, getMetaInfoMap(originalExif, TIFF_VALUE_KEYS));
+    public static String getEXIFJsonString(final ExifInterface originalExif) {
+        Map<String, Map<String, Object>> resultMap = new HashMap<>();
+        resultMap.put(EXIF_KEY, new HashMap<String, Object>());
+        resultMap.put(GPS_KEY, new HashMap<String, Object>());
+        resultMap.put(TIFF_KEY, new HashMap<String, Object>());
 
-        return GSON_OBJ.toJson(resultMpa);
+        for (Tag tag : TAGS) {
+            final Object value = getValue(originalExif, tag);
+            if (value != null) {
+                resultMap.get(tag.group).put(tag.name, value);
+            }
+        }
+
+        return GSON_OBJ.toJson(resultMap);
     }
 
-    private static Map<String, Object> getMetaInfoMap(ExifInterface originalExif, Map<Class, List<String>> inputMap) {
-        Map<String, Object> outputMap = new HashMap<>();
-        for (Map.Entry<Class, List<String>> keyClass : inputMap.entrySet()) {
-            if (keyClass.getKey() == String.class) {
-                for (String key : inputMap.get(keyClass.getKey())) {
-                    try {
-                        outputMap.put(key, originalExif.getAttribute(key));
-                    } catch (Exception ignore) {}
-                }
-            } else if (keyClass.getKey() == Integer.class) {
-                for (String key : inputMap.get(keyClass.getKey())) {
-                    try {
-                        outputMap.put(key, originalExif.getAttributeInt(key, 0));
-                    } catch (Exception ignore) {}
-                }
-            } else if (keyClass.getKey() == Double.class) {
-                for (String key : inputMap.get(keyClass.getKey())) {
-                    try {
-                        outputMap.put(key, originalExif.getAttributeDouble(key, 0.0));
-                    } catch (Exception ignore) {}
+    /**
+     * Same content as getEXIFJsonString, written straight into a bridge map instead of a JSON string.
+     */
+    public static WritableMap getEXIFMap(final ExifInterface originalExif) {
+        WritableMap exifMap = Arguments.createMap();
+        WritableMap gpsMap = Arguments.createMap();
+        WritableMap tiffMap = Arguments.createMap();
+
+        for (Tag tag : TAGS) {
+            final WritableMap groupMap = EXIF_KEY.equals(tag.group) ? exifMap : (GPS_KEY.equals(tag.group) ? gpsMap : tiffMap);
+            try {
+                switch (tag.type) {
+                    case TYPE_INT:
+                        groupMap.putInt(tag.name, originalExif.getAttributeInt(tag.name, 0));
+                        break;
+                    case TYPE_DOUBLE:
+                        groupMap.putDouble(tag.name, originalExif.getAttributeDouble(tag.name, 0.0));
+                        break;
+                    default:
+                        final String value = originalExif.getAttribute(tag.name);
+                        if (value != null) {
+                            groupMap.putString(tag.name, value);
+                        }
+                        break;
                 }
+            } catch (Exception ignore) {}
+        }
+
+        WritableMap resultMap = Arguments.createMap();
+        resultMap.putMap(EXIF_KEY, exifMap);
+        resultMap.putMap(GPS_KEY, gpsMap);
+        resultMap.putMap(TIFF_KEY, tiffMap);
+        return resultMap;
+    }
+
+    /**
+     * Raw string values of the given tags, missing tags are left out.
+     */
+    public static WritableMap getAttributeMap(final ExifInterface originalExif, final List<String> tagNames) {
+        WritableMap attributeMap = Arguments.createMap();
+        for (String tagName : tagNames) {
+            final String value = originalExif.getAttribute(tagName);
+            if (value != null) {
+                attributeMap.putString(tagName, value);
+            }
+        }
+        return attributeMap;
+    }
+
+    private static Object getValue(final ExifInterface originalExif, final Tag tag) {
+        try {
+            switch (tag.type) {
+                case TYPE_INT:
+                    return originalExif.getAttributeInt(tag.name, 0);
+                case TYPE_DOUBLE:
+                    return originalExif.getAttributeDouble(tag.name, 0.0);
+                default:
+                    return originalExif.getAttribute(tag.name);
             }
+        } catch (Exception ignore) {
+            return null;
         }
-        return outputMap;
     }
 }
@@ -0,0 +1,288 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Baseline JPEG encoder for an 8 bit single channel plane, one component with the standard
+ * luminance quantization and Huffman tables (ITU T.81 Annex K), quality scaled as in libjpeg.
+ */
+class GrayscaleJpegEncoder {
+
+    private static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10, 17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34, 27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36, 29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46, 53, 60, 61, 54, 47, 55, 62, 63,
+    };
+
+    private static final int[] LUMINANCE_QUANTIZATION = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99,
+    };
+
+    private static final int[] DC_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] DC_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+
+    private static final int[] AC_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7D};
+    private static final int[] AC_VALUES = {
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xA1, 0x08, 0x23, 0x42, 0xB1, 0xC1, 0x15, 0x52, 0xD1, 0xF0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0A, 0x16, 0x17, 0x18, 0x19, 0x1A, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2A, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3A, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4A, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5A, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6A, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7A, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8A, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9A, 0xA2, 0xA3, 0xA4, 0xA5, 0xA6, 0xA7,
+            0xA8, 0xA9, 0xAA, 0xB2, 0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xB9, 0xBA, 0xC2, 0xC3, 0xC4, 0xC5,
+            0xC6, 0xC7, 0xC8, 0xC9, 0xCA, 0xD2, 0xD3, 0xD4, 0xD5, 0xD6, 0xD7, 0xD8, 0xD9, 0xDA, 0xE1, 0xE2,
+            0xE3, 0xE4, 0xE5, 0xE6, 0xE7, 0xE8, 0xE9, 0xEA, 0xF1, 0xF2, 0xF3, 0xF4, 0xF5, 0xF6, 0xF7, 0xF8,
+            0xF9, 0xFA,
+    };
+
+    // cos((2x + 1) * u * PI / 16) * c(u) / 2, the separable DCT basis
+    private static final float[] DCT_BASIS = new float[64];
+
+    static {
+        for (int u = 0; u < 8; u++) {
+            final double scale = (u == 0 ? Math.sqrt(0.5) : 1.0) / 2.0;
+            for (int x = 0; x < 8; x++) {
+                DCT_BASIS[u * 8 + x] = (float)(scale * Math.cos((2 * x + 1) * u * Math.PI / 16));
+            }
+        }
+    }
+
+    private final OutputStream outputStream;
+    private final int[] quantization = new int[64];
+
+    private final int[] dcCodes = new int[12];
+    private final int[] dcLengths = new int[12];
+    private final int[] acCodes = new int[256];
+    private final int[] acLengths = new int[256];
+
+    private int bitBuffer = 0;
+    private int bitCount = 0;
+
+    private GrayscaleJpegEncoder(final OutputStream outputStream, final int quality) {
+        this.outputStream = outputStream;
+
+        final int clampedQuality = Math.max(1, Math.min(100, quality));
+        final int scale = clampedQuality < 50 ? 5000 / clampedQuality : 200 - clampedQuality * 2;
+        for (int i = 0; i < 64; i++) {
+            this.quantization[i] = Math.max(1, Math.min(255, (LUMINANCE_QUANTIZATION[i] * scale + 50) / 100));
+        }
+
+        buildHuffmanCodes(DC_BITS, DC_VALUES, this.dcCodes, this.dcLengths);
+        buildHuffmanCodes(AC_BITS, AC_VALUES, this.acCodes, this.acLengths);
+    }
+
+    static void encode(final byte[] plane, final int width, final int height, final int quality,
+                       final OutputStream outputStream) throws IOException {
+        GrayscaleJpegEncoder encoder = new GrayscaleJpegEncoder(outputStream, quality);
+        encoder.writeHeaders(width, height);
+        encoder.writeScan(plane, width, height);
+        encoder.writeMarker(0xD9);
+    }
+
+    private void writeHeaders(final int width, final int height) throws IOException {
+        this.writeMarker(0xD8);
+
+        // JFIF 1.01, no density, no thumbnail
+        this.writeSegment(0xE0, new int[]{'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+
+        int[] quantizationTable = new int[65];
+        for (int i = 0; i < 64; i++) {
+            quantizationTable[i + 1] = this.quantization[ZIGZAG[i]];
+        }
+        this.writeSegment(0xDB, quantizationTable);
+
+        this.writeSegment(0xC0, new int[]{8, height >> 8, height & 0xFF, width >> 8, width & 0xFF, 1, 1, 0x11, 0});
+
+        this.writeSegment(0xC4, concat(new int[]{0x00}, DC_BITS, DC_VALUES));
+        this.writeSegment(0xC4, concat(new int[]{0x10}, AC_BITS, AC_VALUES));
+
+        this.writeSegment(0xDA, new int[]{1, 1, 0x00, 0, 63, 0});
+    }
+
+    private void writeScan(final byte[] plane, final int width, final int height) throws IOException {
+        float[] block = new float[64];
+        float[] rows = new float[64];
+        int[] coefficients = new int[64];
+        int previousDC = 0;
+
+        for (int blockY = 0; blockY < height; blockY += 8) {
+            for (int blockX = 0; blockX < width; blockX += 8) {
+                // edge blocks repeat the last row and column
+                for (int y = 0; y < 8; y++) {
+                    final int row = Math.min(blockY + y, height - 1) * width;
+                    for (int x = 0; x < 8; x++) {
+                        block[y * 8 + x] = (plane[row + Math.min(blockX + x, width - 1)] & 0xFF) - 128;
+                    }
+                }
+
+                forwardDCT(block, rows);
+                for (int i = 0; i < 64; i++) {
+                    final int natural = ZIGZAG[i];
+                    coefficients[i] = Math.round(block[natural] / this.quantization[natural]);
+                }
+
+                previousDC = this.writeBlock(coefficients, previousDC);
+            }
+        }
+
+        // pad the last byte with 1 bits
+        if (this.bitCount > 0) {
+            this.writeBits(0x7F, 7);
+        }
+    }
+
+    private static void forwardDCT(final float[] block, final float[] rows) {
+        for (int y = 0; y < 8; y++) {
+            for (int u = 0; u < 8; u++) {
+                float sum = 0;
+                for (int x = 0; x < 8; x++) {
+                    sum += DCT_BASIS[u * 8 + x] * block[y * 8 + x];
+                }
+                rows[y * 8 + u] = sum;
+            }
+        }
+        for (int u = 0; u < 8; u++) {
+            for (int v = 0; v < 8; v++) {
+                float sum = 0;
+                for (int y = 0; y < 8; y++) {
+                    sum += DCT_BASIS[v * 8 + y] * rows[y * 8 + u];
+                }
+                block[v * 8 + u] = sum;
+            }
+        }
+    }
+
+    private int writeBlock(final int[] coefficients, final int previousDC) throws IOException {
+        final int difference = coefficients[0] - previousDC;
+        final int dcCategory = category(difference);
+        this.writeBits(this.dcCodes[dcCategory], this.dcLengths[dcCategory]);
+        this.writeBits(amplitude(difference, dcCategory), dcCategory);
+
+        int run = 0;
+        for (int i = 1; i < 64; i++) {
+            final int coefficient = coefficients[i];
+            if (coefficient == 0) {
+                run++;
+                continue;
+            }
+
+            while (run > 15) {
+                this.writeBits(this.acCodes[0xF0], this.acLengths[0xF0]);
+                run -= 16;
+            }
+
+            final int acCategory = category(coefficient);
+            final int symbol = (run << 4) | acCategory;
+            this.writeBits(this.acCodes[symbol], this.acLengths[symbol]);
+            this.writeBits(amplitude(coefficient, acCategory), acCategory);
+            run = 0;
+        }
+
+        if (run > 0) {
+            this.writeBits(this.acCodes[0x00], this.acLengths[0x00]);
+        }
+        return coefficients[0];
+    }
+
+    private static int category(int value) {
+        value = Math.abs(value);
+        int bits = 0;
+        while (value > 0) {
+            bits++;
+            value >>= 1;
+        }
+        return bits;
+    }
+
+    private static int amplitude(final int value, final int bits) {
+        return value >= 0 ? value : value + (1 << bits) - 1;
+    }
+
+    private void writeBits(final int bits, final int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+
+        this.bitBuffer = (this.bitBuffer << length) | (bits & ((1 << length) - 1));
+        this.bitCount += length;
+        while (this.bitCount >= 8) {
+            final int b = (this.bitBuffer >> (this.bitCount - 8)) & 0xFF;
+            this.outputStream.write(b);
+            if (b == 0xFF) {
+                this.outputStream.write(0);
+            }
+            this.bitCount -= 8;
+        }
+        this.bitBuffer &= (1 << this.bitCount) - 1;
+    }
+
+    private void writeMarker(final int marker) throws IOException {
+        this.outputStream.write(0xFF);
+        this.outputStream.write(marker);
+    }
+
+    private void writeSegment(final int marker, final int[] data) throws IOException {
+        this.writeMarker(marker);
+        final int length = data.length + 2;
+        this.outputStream.write(length >> 8);
+        this.outputStream.write(length & 0xFF);
+        for (int value : data) {
+            this.outputStream.write(value);
+        }
+    }
+
+    private static void buildHuffmanCodes(final int[] bits, final int[] values, final int[] codes, final int[] lengths) {
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            for (int i = 0; i < bits[length - 1]; i++) {
+                codes[values[k]] = code;
+                lengths[values[k]] = length;
+                code++;
+                k++;
+            }
+            code <<= 1;
+        }
+    }
+
+    private static int[] concat(final int[] a, final int[] b, final int[] c) {
+        int[] result = new int[a.length + b.length + c.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        System.arraycopy(c, 0, result, a.length + b.length, c.length);
+        return result;
+    }
+}
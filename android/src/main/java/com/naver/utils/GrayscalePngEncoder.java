@@ -0,0 +1,207 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8 bit single channel plane as a grayscale PNG (color type 0).
+ * Every row gets the filter with the smallest sum of absolute differences.
+ */
+class GrayscalePngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private static final int IDAT_SIZE = 64 * 1024;
+
+    static void encode(final byte[] plane, final int width, final int height, final OutputStream outputStream) throws IOException {
+        outputStream.write(SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 0; // grayscale
+        writeChunk(outputStream, "IHDR", header, header.length);
+
+        final ChunkOutputStream idatOutputStream = new ChunkOutputStream(outputStream, "IDAT");
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try(DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(idatOutputStream, deflater, IDAT_SIZE)) {
+            byte[] filtered = new byte[width + 1];
+            byte[] candidate = new byte[width + 1];
+            for (int y = 0; y < height; y++) {
+                long bestSum = Long.MAX_VALUE;
+                for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+                    final long sum = filterRow(plane, width, y, filter, candidate);
+                    if (sum < bestSum) {
+                        bestSum = sum;
+                        byte[] swap = filtered;
+                        filtered = candidate;
+                        candidate = swap;
+                    }
+                }
+                deflaterOutputStream.write(filtered, 0, width + 1);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(outputStream, "IEND", new byte[0], 0);
+    }
+
+    private static long filterRow(final byte[] plane, final int width, final int y, final int filter, final byte[] out) {
+        final int row = y * width;
+        final int previousRow = row - width;
+
+        out[0] = (byte)filter;
+        long sum = 0;
+        for (int x = 0; x < width; x++) {
+            final int value = plane[row + x] & 0xFF;
+            final int left = x > 0 ? plane[row + x - 1] & 0xFF : 0;
+            final int up = y > 0 ? plane[previousRow + x] & 0xFF : 0;
+            final int upLeft = (x > 0 && y > 0) ? plane[previousRow + x - 1] & 0xFF : 0;
+
+            int predictor;
+            switch (filter) {
+                case FILTER_SUB:
+                    predictor = left;
+                    break;
+                case FILTER_UP:
+                    predictor = up;
+                    break;
+                case FILTER_AVERAGE:
+                    predictor = (left + up) >> 1;
+                    break;
+                case FILTER_PAETH:
+                    predictor = paeth(left, up, upLeft);
+                    break;
+                default:
+                    predictor = 0;
+                    break;
+            }
+
+            final byte residual = (byte)(value - predictor);
+            out[x + 1] = residual;
+            sum += Math.abs((int)residual);
+        }
+        return sum;
+    }
+
+    private static int paeth(final int a, final int b, final int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a);
+        final int pb = Math.abs(p - b);
+        final int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(final OutputStream outputStream, final String type, final byte[] data, final int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(ASCII);
+
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        outputStream.write(lengthBytes);
+        outputStream.write(typeBytes);
+        outputStream.write(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int)crc.getValue());
+        outputStream.write(crcBytes);
+    }
+
+    private static void putInt(final byte[] buffer, final int offset, final int value) {
+        buffer[offset] = (byte)(value >>> 24);
+        buffer[offset + 1] = (byte)(value >>> 16);
+        buffer[offset + 2] = (byte)(value >>> 8);
+        buffer[offset + 3] = (byte)value;
+    }
+
+    /**
+     * Splits the compressed stream into chunks of up to IDAT_SIZE bytes. Closing flushes the last
+     * chunk but keeps the underlying stream open.
+     */
+    private static class ChunkOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private final String type;
+        private final byte[] buffer = new byte[IDAT_SIZE];
+        private int count = 0;
+
+        ChunkOutputStream(final OutputStream outputStream, final String type) {
+            this.outputStream = outputStream;
+            this.type = type;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.buffer[this.count++] = (byte)b;
+            if (this.count == this.buffer.length) {
+                this.flushChunk();
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                final int length = Math.min(len, this.buffer.length - this.count);
+                System.arraycopy(b, off, this.buffer, this.count, length);
+                this.count += length;
+                off += length;
+                len -= length;
+                if (this.count == this.buffer.length) {
+                    this.flushChunk();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.count > 0) {
+                this.flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            writeChunk(this.outputStream, this.type, this.buffer, this.count);
+            this.count = 0;
+        }
+    }
+}
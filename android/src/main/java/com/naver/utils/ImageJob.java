@@ -0,0 +1,182 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.graphics.BitmapFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One image request from submission to response. The request checks the job between its stages
+ * and gives up with CancelledException once the job was cancelled or its deadline passed.
+ * A decode in progress is asked to stop through BitmapFactory.Options.requestCancelDecode,
+ * which the platform ignores from Android 7.0, so there the next stage check stops the request.
+ */
+public class ImageJob {
+
+    public static final int DEFAULT_PRIORITY = 0;
+    // below the default, so prefetched work yields to visible requests
+    public static final int PREFETCH_PRIORITY = -1;
+
+    public static final String STAGE_QUEUE = "queue";
+    public static final String STAGE_WRITE = "write";
+
+    public static final String REASON_CANCELLED = "cancelled";
+    public static final String REASON_TIMEOUT = "timeout";
+
+    private static final ScheduledThreadPoolExecutor DEADLINE_EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNImageModifier-deadline");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        DEADLINE_EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
+    public static class CancelledException extends Exception {
+        private final String reason;
+
+        CancelledException(final String jobId, final String stage, final String reason) {
+            super("image job was " + (REASON_TIMEOUT.equals(reason) ? "timed out" : "cancelled")
+                    + ". (jobId: " + jobId + ", stage: " + stage + ")");
+            this.reason = reason;
+        }
+
+        public String getReason() {
+            return this.reason;
+        }
+    }
+
+    private final String id;
+    private final int priority;
+
+    private volatile String cancelReason = null;
+    private BitmapFactory.Options decodeOptions = null;
+    // run on cancel, so a thread waiting elsewhere notices it right away
+    private Runnable cancelWakeup = null;
+    private ScheduledFuture<?> deadline = null;
+
+    /**
+     * The timeout counts from now, so the time spent in the worker queue is included.
+     */
+    public ImageJob(final String id, final int priority, final long timeoutMs) {
+        this.id = id;
+        this.priority = priority;
+
+        if (timeoutMs > 0) {
+            this.deadline = DEADLINE_EXECUTOR.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    cancel(REASON_TIMEOUT);
+                }
+            }, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+
+    public void cancel() {
+        this.cancel(REASON_CANCELLED);
+    }
+
+    private void cancel(final String reason) {
+        final Runnable wakeup;
+        synchronized (this) {
+            if (this.cancelReason != null) {
+                return;
+            }
+
+            this.cancelReason = reason;
+            if (this.decodeOptions != null) {
+                this.decodeOptions.requestCancelDecode();
+            }
+            wakeup = this.cancelWakeup;
+        }
+
+        // outside the lock, the wakeup takes the lock of the waiter
+        if (wakeup != null) {
+            wakeup.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelReason != null;
+    }
+
+    /**
+     * REASON_CANCELLED or REASON_TIMEOUT, null while the job is alive.
+     */
+    public String getCancelReason() {
+        return this.cancelReason;
+    }
+
+    /**
+     * Throws when the job was cancelled, stage names the stage that was about to start.
+     */
+    public void checkpoint(final String stage) throws CancelledException {
+        final String reason = this.cancelReason;
+        if (reason != null) {
+            throw new CancelledException(this.id, stage, reason);
+        }
+    }
+
+    /**
+     * Registers the options of a decode that is about to start, so cancel can interrupt it.
+     */
+    synchronized void beginDecode(final BitmapFactory.Options options) throws CancelledException {
+        this.checkpoint(ImageMetrics.STAGE_DECODE);
+        this.decodeOptions = options;
+    }
+
+    synchronized void endDecode() {
+        this.decodeOptions = null;
+    }
+
+    synchronized void setCancelWakeup(final Runnable wakeup) {
+        this.cancelWakeup = wakeup;
+    }
+
+    /**
+     * Stops the deadline timer once the response is built.
+     */
+    public synchronized void finish() {
+        if (this.deadline != null) {
+            this.deadline.cancel(false);
+            this.deadline = null;
+        }
+    }
+}
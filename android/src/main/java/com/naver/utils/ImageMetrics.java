@@ -0,0 +1,262 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rolling metrics of the processed requests. Every stage keeps a window of the latest samples,
+ * percentiles are computed from a sorted copy of the window only when they are read.
+ */
+public class ImageMetrics {
+
+    public static final String STAGE_CACHE_LOOKUP = "cacheLookup";
+    public static final String STAGE_BOUNDS = "bounds";
+    public static final String STAGE_ADMISSION = "admission";
+    public static final String STAGE_DECODE = "decode";
+    public static final String STAGE_RENDER = "render";
+    public static final String STAGE_TILED = "tiled";
+    public static final String STAGE_ENCODE = "encode";
+    public static final String STAGE_EXIF = "exif";
+    public static final String STAGE_TOTAL = "total";
+
+    public static final String BYTES_IN = "bytesIn";
+    public static final String BYTES_OUT = "bytesOut";
+    public static final String BITMAP_BYTES = "bitmapBytes";
+
+    private static final int DEFAULT_WINDOW_SIZE = 256;
+
+    private static final ImageMetrics INSTANCE = new ImageMetrics(DEFAULT_WINDOW_SIZE);
+
+    public static ImageMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private final int windowSize;
+    private final Map<String, Window> windows = new LinkedHashMap<>();
+
+    private long requestCount = 0;
+    private long failureCount = 0;
+    private long peakBitmapBytes = 0;
+
+    public ImageMetrics(final int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    /**
+     * Adds the stage times and byte counts of one finished request.
+     */
+    public synchronized void record(final Timer timer, final boolean isSuccess) {
+        this.requestCount++;
+        if (isSuccess == false) {
+            this.failureCount++;
+        }
+
+        for (Map.Entry<String, Long> entry : timer.stageNanos.entrySet()) {
+            this.getWindow(entry.getKey()).add(entry.getValue());
+        }
+        if (timer.bytesIn >= 0) {
+            this.getWindow(BYTES_IN).add(timer.bytesIn);
+        }
+        if (timer.bytesOut >= 0) {
+            this.getWindow(BYTES_OUT).add(timer.bytesOut);
+        }
+        if (timer.peakBitmapBytes > 0) {
+            this.getWindow(BITMAP_BYTES).add(timer.peakBitmapBytes);
+            this.peakBitmapBytes = Math.max(this.peakBitmapBytes, timer.peakBitmapBytes);
+        }
+    }
+
+    public synchronized void reset() {
+        this.windows.clear();
+        this.requestCount = 0;
+        this.failureCount = 0;
+        this.peakBitmapBytes = 0;
+    }
+
+    public synchronized long getRequestCount() {
+        return this.requestCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return this.failureCount;
+    }
+
+    public synchronized long getPeakBitmapBytes() {
+        return this.peakBitmapBytes;
+    }
+
+    /**
+     * Snapshot of every recorded series, each as { count, min, max, mean, p50, p95, p99 }.
+     * Stage series are in nanoseconds, byte series in bytes.
+     */
+    public synchronized Map<String, Summary> getSummaries() {
+        Map<String, Summary> summaries = new LinkedHashMap<>();
+        for (Map.Entry<String, Window> entry : this.windows.entrySet()) {
+            summaries.put(entry.getKey(), entry.getValue().summarize());
+        }
+        return summaries;
+    }
+
+    private Window getWindow(final String name) {
+        Window window = this.windows.get(name);
+        if (window == null) {
+            window = new Window(this.windowSize);
+            this.windows.put(name, window);
+        }
+        return window;
+    }
+
+    private static class Window {
+        private final long[] samples;
+        private int next = 0;
+        private int size = 0;
+        private long totalCount = 0;
+
+        Window(final int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        void add(final long sample) {
+            this.samples[this.next] = sample;
+            this.next = (this.next + 1) % this.samples.length;
+            this.size = Math.min(this.size + 1, this.samples.length);
+            this.totalCount++;
+        }
+
+        Summary summarize() {
+            final long[] sorted = Arrays.copyOf(this.samples, this.size);
+            Arrays.sort(sorted);
+
+            long sum = 0;
+            for (long sample : sorted) {
+                sum += sample;
+            }
+
+            Summary summary = new Summary();
+            summary.count = this.totalCount;
+            summary.windowCount = sorted.length;
+            if (sorted.length > 0) {
+                summary.min = sorted[0];
+                summary.max = sorted[sorted.length - 1];
+                summary.mean = (double)sum / sorted.length;
+                summary.p50 = percentile(sorted, 0.50);
+                summary.p95 = percentile(sorted, 0.95);
+                summary.p99 = percentile(sorted, 0.99);
+            }
+            return summary;
+        }
+
+        // nearest rank
+        private static long percentile(final long[] sorted, final double ratio) {
+            final int rank = (int)Math.ceil(ratio * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+    }
+
+    public static class Summary {
+        public long count;
+        public int windowCount;
+        public long min;
+        public long max;
+        public double mean;
+        public long p50;
+        public long p95;
+        public long p99;
+    }
+
+    /**
+     * Times the stages of a single request on the calling thread. Not thread safe, one per request.
+     * Starting a stage stops the running one, and a stage started more than once is summed.
+     */
+    public static class Timer {
+        private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+        private final long requestStartNanos = System.nanoTime();
+
+        private String currentStage;
+        private long stageStartNanos;
+
+        private long bytesIn = -1;
+        private long bytesOut = -1;
+        private long peakBitmapBytes = 0;
+
+        public void start(final String stage) {
+            this.stop();
+            this.currentStage = stage;
+            this.stageStartNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            if (this.currentStage == null) {
+                return;
+            }
+
+            final long elapsed = System.nanoTime() - this.stageStartNanos;
+            final Long previous = this.stageNanos.get(this.currentStage);
+            this.stageNanos.put(this.currentStage, previous != null ? previous + elapsed : elapsed);
+            this.currentStage = null;
+        }
+
+        /**
+         * Stops the running stage and records the total time since the timer was created.
+         */
+        public void finish() {
+            this.stop();
+            this.stageNanos.put(STAGE_TOTAL, System.nanoTime() - this.requestStartNanos);
+        }
+
+        public void setBytesIn(final long bytesIn) {
+            this.bytesIn = bytesIn;
+        }
+
+        public void setBytesOut(final long bytesOut) {
+            this.bytesOut = bytesOut;
+        }
+
+        /**
+         * Bytes of the bitmaps alive at the same time, the largest value reported wins.
+         */
+        public void updatePeakBitmapBytes(final long bitmapBytes) {
+            this.peakBitmapBytes = Math.max(this.peakBitmapBytes, bitmapBytes);
+        }
+
+        public Map<String, Long> getStageNanos() {
+            return this.stageNanos;
+        }
+
+        public long getBytesIn() {
+            return this.bytesIn;
+        }
+
+        public long getBytesOut() {
+            return this.bytesOut;
+        }
+
+        public long getPeakBitmapBytes() {
+            return this.peakBitmapBytes;
+        }
+    }
+}
@@ -23,44 +23,59 @@
 
 package com.naver.utils;
 
-import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Canvas;
-import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
-import android.net.Uri;
+import android.graphics.Rect;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.io.OutputStream;
 
 public class ImageModifierUtil {
 
-    private static final String URI_DATA = "data";
-    private static final String URI_CONTENT = "content";
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    // the buffer grows past it, a bigger start would only reserve heap the output may never need
+    private static final int MAX_INITIAL_BASE64_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final String BASE64_CHARSET = "US-ASCII";
 
-    private static final List<String> URI_FILE_CONTENT = Collections.unmodifiableList(Arrays.asList("file", "content"));
+    /**
+     * Decodes the image with the given sample size, reusing a pooled bitmap through inBitmap when one fits.
+     * imageBounds must come from getImageBounds for the same source.
+     */
+    public static Bitmap getSourceImage(final ImageSource imageSource, final BitmapFactory.Options imageBounds, final int inSampleSize) throws Exception {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Math.max(1, inSampleSize);
+        options.inMutable = true;
 
-    public static Bitmap getSourceImageByPath(final Context context, final Uri imageURI) throws Exception {
-        if (imageURI == null) {
-            throw new Exception("imageURI must not be null.");
-        }
+        final int decodeWidth = (imageBounds.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        final int decodeHeight = (imageBounds.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        options.inBitmap = BitmapPool.getInstance().getDirty(decodeWidth, decodeHeight, options.inPreferredConfig);
 
-        final String imageURIScheme = imageURI.getScheme();
+        Bitmap sourceImage;
+        try {
+            sourceImage = imageSource.decode(options);
+        } catch (ImageJob.CancelledException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            if (options.inBitmap == null) {
+                throw ex;
+            }
+            sourceImage = null;
+        }
 
-        Bitmap sourceImage = null;
-        if (StringUtils.isStringValid(imageURIScheme) == false || URI_FILE_CONTENT.contains(imageURIScheme.toLowerCase())) {
-            sourceImage = loadBitmapImage(context, imageURI);
-        } else if (imageURIScheme.equalsIgnoreCase(URI_DATA)) {
-            sourceImage = loadBitmapImageByBase64(imageURI);
+        if (sourceImage == null && options.inBitmap != null) {
+            // The pooled bitmap did not fit the decoder, decode once more into a fresh allocation.
+            BitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+            sourceImage = imageSource.decode(options);
         }
 
         if (sourceImage == null) {
@@ -70,51 +85,126 @@ public class ImageModifierUtil {
         return sourceImage;
     }
 
-    private static Bitmap loadBitmapImage(final Context context, final Uri imageURI) throws Exception {
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        //options.inJustDecodeBounds = true;
-        if (imageURI.getScheme() == null || imageURI.getScheme().equalsIgnoreCase(URI_CONTENT) == false) {
+    /**
+     * Decodes only the region of the image through BitmapRegionDecoder, subsampled like getSourceImage.
+     */
+    public static Bitmap getSourceImageRegion(final ImageSource imageSource, final Rect region, final int inSampleSize) throws Exception {
+        final BitmapRegionDecoder regionDecoder = imageSource.newRegionDecoder();
+        if (regionDecoder == null) {
+            throw new Exception("image region can't be loaded by URI.");
+        }
+
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = Math.max(1, inSampleSize);
+            options.inMutable = true;
+
+            final int decodeWidth = (region.width() + options.inSampleSize - 1) / options.inSampleSize;
+            final int decodeHeight = (region.height() + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = BitmapPool.getInstance().getDirty(decodeWidth, decodeHeight, options.inPreferredConfig);
+
+            Bitmap regionImage;
             try {
-                return BitmapFactory.decodeFile(imageURI.getEncodedPath(), options);
-            } catch (Exception ex) {
-                throw ex;
+                regionImage = regionDecoder.decodeRegion(region, options);
+            } catch (IllegalArgumentException ex) {
+                regionImage = null;
             }
-        } else {
-            try(InputStream input = context.getContentResolver().openInputStream(imageURI)) {
-                return BitmapFactory.decodeStream(input, null, options);
-            } catch (Exception ex) {
-                throw new Exception("An error occurred while working on Bitmap processing by URI.");
+
+            if (regionImage == null && options.inBitmap != null) {
+                BitmapPool.getInstance().put(options.inBitmap);
+                options.inBitmap = null;
+                regionImage = regionDecoder.decodeRegion(region, options);
+            }
+
+            if (regionImage == null) {
+                throw new Exception("image region can't be loaded by URI.");
             }
+
+            return regionImage;
+        } finally {
+            regionDecoder.recycle();
         }
     }
 
-    private static List<String> LIST_OF_IMAGE_TYPE = Collections.unmodifiableList(Arrays.asList("image/jpg", "image/jpeg", "image/png"));
-
-    private static Bitmap loadBitmapImageByBase64(final Uri imageURI) throws Exception {
-        final String imagePath = imageURI.getSchemeSpecificPart();
-        final int splitLocation = imagePath.indexOf(',');
-        if (splitLocation != -1) {
-            final String imageType = imagePath.substring(0, splitLocation).replace('\\', '/').toLowerCase();
-            if (LIST_OF_IMAGE_TYPE.contains(imageType)) {
-                final String base64EncodedImageString = imagePath.substring(splitLocation + 1);
-                final byte[] decodedStringArray = Base64.decode(base64EncodedImageString, Base64.DEFAULT);
-                return BitmapFactory.decodeByteArray(decodedStringArray, 0, decodedStringArray.length);
-            }
+    /**
+     * Renders the pipeline band by band from a region decoder, see ImagePipeline.renderTiled.
+     * Returns null when the format has no region decoder, the caller then decodes the whole image.
+     */
+    public static Bitmap renderTiled(final ImageSource imageSource, final ImagePipeline pipeline, final Rect sourceRegion,
+                                     final int inSampleSize, final long bandBytes) throws Exception {
+        final BitmapRegionDecoder regionDecoder;
+        try {
+            regionDecoder = imageSource.newRegionDecoder();
+        } catch (IOException ex) {
+            return null;
+        }
+        if (regionDecoder == null) {
+            return null;
+        }
+
+        try {
+            return pipeline.renderTiled(regionDecoder, sourceRegion, inSampleSize, bandBytes);
+        } finally {
+            regionDecoder.recycle();
+        }
+    }
+
+    /**
+     * Hands a bitmap that is no longer used back to the BitmapPool instead of recycling it.
+     * A bitmap owned by the SourceBitmapCache only drops one reference.
+     */
+    public static void releaseBitmap(final Bitmap image) {
+        if (SourceBitmapCache.releaseIfCached(image) == false) {
+            BitmapPool.getInstance().put(image);
+        }
+    }
+
+    /**
+     * Reads only the header of the image, so no pixel memory is allocated.
+     * outWidth, outHeight and outMimeType of the returned options are filled.
+     */
+    public static BitmapFactory.Options getImageBounds(final ImageSource imageSource) throws Exception {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        imageSource.decode(options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new Exception("image bounds can't be loaded by URI.");
         }
 
-        throw new Exception("An error occurred while working on Bitmap base64 processing by URI.");
+        return options;
     }
 
-    public static Bitmap getImageByResize(final Bitmap image, final float resizeRatio, final boolean reuseInputImage) throws Exception {
+    /**
+     * Largest power of two sample size whose decoded image is still at least the target size,
+     * the remaining fractional scale is left to the single draw of ImagePipeline.
+     */
+    public static int calculateInSampleSize(final int sourceWidth, final int sourceHeight, final int targetWidth, final int targetHeight) {
+        int inSampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return inSampleSize;
+        }
+
+        while ((sourceWidth / (inSampleSize * 2)) >= targetWidth && (sourceHeight / (inSampleSize * 2)) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+
+        return inSampleSize;
+    }
+
+    public static Bitmap getImageByResize(final Bitmap image, final int width, final int height, final boolean reuseInputImage) throws Exception {
         if (image == null) {
             throw new Exception("image must not be null.");
         }
         try {
-            final int width = (int)(image.getWidth() * resizeRatio);
-            final int height = (int)(image.getHeight() * resizeRatio);
-            Bitmap resultImage = Bitmap.createScaledBitmap(image, width, height, true);
+            final Bitmap.Config config = image.getConfig() != null ? image.getConfig() : Bitmap.Config.ARGB_8888;
+            Bitmap resultImage = BitmapPool.getInstance().get(width, height, config);
+
+            Canvas canvas = new Canvas(resultImage);
+            canvas.drawBitmap(image, new Rect(0, 0, image.getWidth(), image.getHeight()), new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+
             if (reuseInputImage == false) {
-                image.recycle();
+                releaseBitmap(image);
             }
             return resultImage;
         } catch (OutOfMemoryError ex) {
@@ -132,63 +222,61 @@ public class ImageModifierUtil {
             throw new IOException("image file already exists.");
         }
 
-        byte[] imageDataArray;
-        try(ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            image.compress(compressFormat, (int)(imageQuality * 100), outputStream);
-
-            imageDataArray = outputStream.toByteArray();
-            outputStream.flush();
+        // Bitmap.compress writes straight into the file, so the encoded image is never held in memory as a whole.
+        try(OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(savePath), OUTPUT_BUFFER_SIZE)) {
+            if (image.compress(compressFormat, (int)(imageQuality * 100), outputStream) == false) {
+                throw new IOException("Bitmap.compress failed.");
+            }
         } catch (Exception ex) {
+            savePath.delete();
             throw new Exception("An error occurred during image compression.");
         }
 
-        if (imageDataArray == null || imageDataArray.length == 0) {
+        if (savePath.length() == 0) {
+            savePath.delete();
             throw new Exception("The image data array problem has occurred.");
         }
 
-        FileOutputStream fos = new FileOutputStream(savePath);
-        fos.write(imageDataArray);
-        fos.flush();
-        fos.close();
-
-        image.recycle();
+        releaseBitmap(image);
     }
 
-    private static final float[] GRAYSCALE_MATRIX = new float[]{0.3f, 0.59f, 0.11f, 0, 0, 0.3f, 0.59f, 0.11f, 0, 0, 0.3f, 0.59f, 0.11f, 0, 0, 0, 0, 0, 1, 0,};
-
-    public static Bitmap imageToGrayscale(Bitmap originSourceImage) {
-        Bitmap convertedImage = Bitmap.createBitmap(originSourceImage.getWidth(), originSourceImage.getHeight(), originSourceImage.getConfig());
-
-        Canvas canvas = new Canvas(convertedImage);
-        Paint paint = new Paint();
-
-        ColorMatrixColorFilter colorMatrixColorFilter = new ColorMatrixColorFilter(GRAYSCALE_MATRIX);
-        paint.setColorFilter(colorMatrixColorFilter);
-        canvas.drawBitmap(originSourceImage, 0, 0, paint);
-
-        originSourceImage.recycle();
-
-        return convertedImage;
-    }
+    static final float[] GRAYSCALE_MATRIX = new float[]{0.3f, 0.59f, 0.11f, 0, 0, 0.3f, 0.59f, 0.11f, 0, 0, 0.3f, 0.59f, 0.11f, 0, 0, 0, 0, 0, 1, 0,};
 
     public static String getBase64FromBitmap(Bitmap bitmap, final Bitmap.CompressFormat compressFormat) throws Exception {
-        try(ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            bitmap.compress(compressFormat, 100, byteArrayOutputStream);
-            final String base64Encoded = Base64.encodeToString(byteArrayOutputStream.toByteArray(), Base64.DEFAULT);
-            bitmap.recycle();
-            return base64Encoded;
+        // The encoder output goes through Base64OutputStream, so only the base64 text is buffered, not the encoded image as well.
+        ByteArrayOutputStream base64OutputBuffer = new ByteArrayOutputStream(getEstimatedBase64Length(bitmap, compressFormat));
+        try(Base64OutputStream base64OutputStream = new Base64OutputStream(base64OutputBuffer, Base64.DEFAULT)) {
+            if (bitmap.compress(compressFormat, 100, base64OutputStream) == false) {
+                throw new IOException("Bitmap.compress failed.");
+            }
         } catch (Exception ex) {
             throw new Exception("There was a problem while image to base64 converting.");
         }
+
+        releaseBitmap(bitmap);
+        return base64OutputBuffer.toString(BASE64_CHARSET);
     }
 
-    public static InputStream getInputStreamFromBitmap(Bitmap bitmap, final Bitmap.CompressFormat compressFormat) throws Exception {
-        try(ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            bitmap.compress(compressFormat, 100, byteArrayOutputStream);
-            byte[] bitmapArray = byteArrayOutputStream.toByteArray();
-            return new ByteArrayInputStream(bitmapArray);
-        } catch (Exception ex) {
-            throw new Exception("There was a problem while image to InputStream converting.");
+    /**
+     * Compresses straight into the given stream and releases the bitmap. The stream is not closed.
+     */
+    public static void writeImage(final Bitmap image, final OutputStream outputStream,
+                                  final Bitmap.CompressFormat compressFormat, final float imageQuality) throws Exception {
+        if (image == null) {
+            throw new Exception("image must not be null.");
+        }
+
+        if (image.compress(compressFormat, (int)(imageQuality * 100), outputStream) == false) {
+            throw new IOException("Bitmap.compress failed.");
         }
+
+        releaseBitmap(image);
+    }
+
+    private static int getEstimatedBase64Length(final Bitmap bitmap, final Bitmap.CompressFormat compressFormat) {
+        // a full quality JPEG or WebP photo takes about a quarter byte per pixel, PNG rather one, plus 4/3 for base64
+        final long pixelCount = (long)bitmap.getWidth() * bitmap.getHeight();
+        final long estimatedLength = (compressFormat == Bitmap.CompressFormat.PNG ? pixelCount : pixelCount / 4) * 4 / 3;
+        return (int)Math.max(OUTPUT_BUFFER_SIZE, Math.min(estimatedLength, MAX_INITIAL_BASE64_BUFFER_SIZE));
     }
 }
@@ -0,0 +1,480 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Composes the requested operations into one Matrix and one ColorMatrix,
+ * so the whole request is rendered by a single draw into a single destination bitmap.
+ */
+public class ImagePipeline {
+
+    public interface Stage {
+        void apply(ImagePipeline pipeline);
+    }
+
+    /**
+     * FAST draws nearest neighbour, BILINEAR filters the one draw, QUALITY halves the source with 2x2
+     * averaging while the draw would shrink it to half or less, so the last bilinear draw skips no pixels.
+     * renderTiled treats QUALITY as BILINEAR, halving a band would leave seams.
+     */
+    public enum Resampling {
+        FAST, BILINEAR, QUALITY
+    }
+
+    // decoded rows added above and below each band for the filter
+    private static final int TILE_BAND_MARGIN = 2;
+
+    // output pixels drawn at once by renderGrayscale
+    private static final int GRAYSCALE_STRIPE_PIXELS = 256 * 1024;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    private final Matrix matrix = new Matrix();
+    private final ColorMatrix colorMatrix = new ColorMatrix();
+    private boolean hasColorFilter = false;
+
+    private int outputWidth;
+    private int outputHeight;
+
+    // outputs of at least this many pixels get the color matrix from ColorMatrixKernel, negative never
+    private long kernelMinPixels = -1;
+
+    // checked before every band of renderTiled
+    private ImageJob job = null;
+
+    private Resampling resampling = Resampling.BILINEAR;
+
+    public ImagePipeline setKernelMinPixels(final long kernelMinPixels) {
+        this.kernelMinPixels = kernelMinPixels;
+        return this;
+    }
+
+    public ImagePipeline setJob(final ImageJob job) {
+        this.job = job;
+        return this;
+    }
+
+    public ImagePipeline setResampling(final Resampling resampling) {
+        this.resampling = resampling;
+        return this;
+    }
+
+    public ImagePipeline addStage(final Stage stage) {
+        if (stage != null) {
+            this.stages.add(stage);
+        }
+        return this;
+    }
+
+    public Bitmap render(final Bitmap sourceImage) throws Exception {
+        if (sourceImage == null) {
+            throw new Exception("image must not be null.");
+        }
+
+        this.prepare(sourceImage.getWidth(), sourceImage.getHeight());
+        if (this.matrix.isIdentity() && this.hasColorFilter == false
+                && this.outputWidth == sourceImage.getWidth() && this.outputHeight == sourceImage.getHeight()) {
+            return sourceImage;
+        }
+
+        final Bitmap.Config config = sourceImage.getConfig() != null ? sourceImage.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap targetImage = BitmapPool.getInstance().get(this.outputWidth, this.outputHeight, config);
+
+        final boolean isKernel = this.isKernelColorFilter();
+
+        Matrix drawMatrix = new Matrix(this.matrix);
+        final Bitmap drawImage = this.resampling == Resampling.QUALITY ? this.halve(sourceImage, drawMatrix) : sourceImage;
+
+        Canvas canvas = new Canvas(targetImage);
+        canvas.drawBitmap(drawImage, drawMatrix, this.getPaint(isKernel == false));
+        if (drawImage != sourceImage) {
+            BitmapPool.getInstance().put(drawImage);
+        }
+        if (isKernel) {
+            this.applyColorKernel(targetImage);
+        }
+
+        return targetImage;
+    }
+
+    /**
+     * Renders the source region band by band, so only one band of decoded pixels is alive at a time
+     * besides the output. Each band is decoded with a small margin and clipped to its own rows of the
+     * output, so filtering does not leave seams between bands.
+     */
+    public Bitmap renderTiled(final BitmapRegionDecoder regionDecoder, final Rect sourceRegion,
+                              final int inSampleSize, final long bandBytes) throws Exception {
+        final int sampleSize = Math.max(1, inSampleSize);
+        final int decodedWidth = (sourceRegion.width() + sampleSize - 1) / sampleSize;
+        final int decodedHeight = (sourceRegion.height() + sampleSize - 1) / sampleSize;
+        final int bandHeight = (int)Math.max(1, Math.min(decodedHeight, bandBytes / ((long)decodedWidth * 4)));
+
+        this.prepare(decodedWidth, decodedHeight);
+        Bitmap targetImage = BitmapPool.getInstance().get(this.outputWidth, this.outputHeight, Bitmap.Config.ARGB_8888);
+
+        final boolean isKernel = this.isKernelColorFilter();
+
+        Canvas canvas = new Canvas(targetImage);
+        Paint paint = this.getPaint(isKernel == false);
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+
+        Matrix bandMatrix = new Matrix();
+        RectF bandBounds = new RectF();
+        try {
+            for (int bandTop = 0; bandTop < decodedHeight; bandTop += bandHeight) {
+                if (this.job != null) {
+                    this.job.checkpoint(ImageMetrics.STAGE_TILED);
+                }
+
+                final int bandBottom = Math.min(decodedHeight, bandTop + bandHeight);
+                final int decodeTop = Math.max(0, bandTop - TILE_BAND_MARGIN);
+                final int decodeBottom = Math.min(decodedHeight, bandBottom + TILE_BAND_MARGIN);
+
+                final Rect bandRegion = new Rect(sourceRegion.left, sourceRegion.top + decodeTop * sampleSize,
+                        sourceRegion.right, Math.min(sourceRegion.bottom, sourceRegion.top + decodeBottom * sampleSize));
+
+                options.inBitmap = BitmapPool.getInstance().getDirty(decodedWidth, decodeBottom - decodeTop, Bitmap.Config.ARGB_8888);
+                Bitmap bandImage;
+                try {
+                    bandImage = regionDecoder.decodeRegion(bandRegion, options);
+                } catch (IllegalArgumentException ex) {
+                    bandImage = null;
+                }
+                if (bandImage == null && options.inBitmap != null) {
+                    BitmapPool.getInstance().put(options.inBitmap);
+                    options.inBitmap = null;
+                    bandImage = regionDecoder.decodeRegion(bandRegion, options);
+                }
+                if (bandImage == null) {
+                    throw new Exception("image region can't be loaded by URI.");
+                }
+
+                bandMatrix.set(this.matrix);
+                bandMatrix.preTranslate(0, decodeTop);
+
+                bandBounds.set(0, bandTop, decodedWidth, bandBottom);
+                this.matrix.mapRect(bandBounds);
+
+                canvas.save();
+                canvas.clipRect((int)Math.floor(bandBounds.left), (int)Math.floor(bandBounds.top),
+                        (int)Math.ceil(bandBounds.right), (int)Math.ceil(bandBounds.bottom));
+                canvas.drawBitmap(bandImage, bandMatrix, paint);
+                canvas.restore();
+
+                BitmapPool.getInstance().put(bandImage);
+            }
+        } catch (Throwable ex) {
+            // a failed band decode or a cancellation must not lose the pooled output
+            BitmapPool.getInstance().put(targetImage);
+            throw ex;
+        }
+
+        if (isKernel) {
+            this.applyColorKernel(targetImage);
+        }
+
+        return targetImage;
+    }
+
+    /**
+     * Renders into the luminance plane of a GrayscaleImage through a small ARGB stripe, so the output
+     * never exists as a full ARGB bitmap. Grayscale itself must not be one of the stages.
+     */
+    public GrayscaleImage renderGrayscale(final Bitmap sourceImage) throws Exception {
+        if (sourceImage == null) {
+            throw new Exception("image must not be null.");
+        }
+
+        this.prepare(sourceImage.getWidth(), sourceImage.getHeight());
+        final int width = this.outputWidth;
+        final int height = this.outputHeight;
+        final int stripeRows = Math.max(1, Math.min(height, GRAYSCALE_STRIPE_PIXELS / width));
+
+        Matrix drawMatrix = new Matrix(this.matrix);
+        final Bitmap drawImage = this.resampling == Resampling.QUALITY ? this.halve(sourceImage, drawMatrix) : sourceImage;
+
+        GrayscaleImage grayscaleImage = new GrayscaleImage(width, height);
+        Bitmap stripeImage = BitmapPool.getInstance().get(width, stripeRows, Bitmap.Config.ARGB_8888);
+        try {
+            Canvas canvas = new Canvas(stripeImage);
+            Paint paint = this.getPaint(true);
+            paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+
+            Matrix stripeMatrix = new Matrix();
+            int[] pixels = new int[width * stripeRows];
+            for (int top = 0; top < height; top += stripeRows) {
+                final int rows = Math.min(stripeRows, height - top);
+
+                stripeMatrix.set(drawMatrix);
+                stripeMatrix.postTranslate(0, -top);
+                canvas.drawBitmap(drawImage, stripeMatrix, paint);
+
+                stripeImage.getPixels(pixels, 0, width, 0, 0, width, rows);
+                grayscaleImage.putLuminance(pixels, top, rows);
+            }
+        } finally {
+            BitmapPool.getInstance().put(stripeImage);
+            if (drawImage != sourceImage) {
+                BitmapPool.getInstance().put(drawImage);
+            }
+        }
+
+        return grayscaleImage;
+    }
+
+    public int getOutputWidth() {
+        return this.outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return this.outputHeight;
+    }
+
+    public Matrix getMatrix() {
+        return this.matrix;
+    }
+
+    public void postScale(final int width, final int height) {
+        if (width <= 0 || height <= 0 || (width == this.outputWidth && height == this.outputHeight)) {
+            return;
+        }
+
+        this.matrix.postScale((float)width / this.outputWidth, (float)height / this.outputHeight);
+        this.outputWidth = width;
+        this.outputHeight = height;
+    }
+
+    /**
+     * Rotates and flips the current output as the EXIF orientation says, 90 and 270 degrees swap
+     * the output size. Folded into the matrix, so it costs no pixel pass of its own.
+     */
+    public void postOrientation(final int orientation) {
+        final Matrix orientationMatrix = getOrientationMatrix(orientation, this.outputWidth, this.outputHeight);
+        if (orientationMatrix == null) {
+            return;
+        }
+
+        this.matrix.postConcat(orientationMatrix);
+        if (isTransposed(orientation)) {
+            final int outputWidth = this.outputWidth;
+            this.outputWidth = this.outputHeight;
+            this.outputHeight = outputWidth;
+        }
+    }
+
+    public void postColorMatrix(final float[] colorMatrixArray) {
+        this.colorMatrix.postConcat(new ColorMatrix(colorMatrixArray));
+        this.hasColorFilter = true;
+    }
+
+    /**
+     * Resets the composed state and applies every stage for the given source size.
+     */
+    public void prepare(final int sourceWidth, final int sourceHeight) {
+        this.matrix.reset();
+        this.colorMatrix.reset();
+        this.hasColorFilter = false;
+        this.outputWidth = sourceWidth;
+        this.outputHeight = sourceHeight;
+
+        for (Stage stage : this.stages) {
+            stage.apply(this);
+        }
+    }
+
+    /**
+     * Halves the image while drawMatrix shrinks it to half or less on both axes, and adjusts drawMatrix to draw
+     * the halved image at the same place. A bilinear 2x reduction averages exactly 2x2 pixels.
+     * Returns the image itself when no halving is needed, otherwise a pooled bitmap the caller releases.
+     */
+    private Bitmap halve(final Bitmap sourceImage, final Matrix drawMatrix) throws Exception {
+        float[] values = new float[9];
+        drawMatrix.getValues(values);
+        // the scale of each source axis, also when the orientation swaps the axes
+        float scaleX = (float)Math.hypot(values[Matrix.MSCALE_X], values[Matrix.MSKEW_Y]);
+        float scaleY = (float)Math.hypot(values[Matrix.MSKEW_X], values[Matrix.MSCALE_Y]);
+
+        Bitmap currentImage = sourceImage;
+        while (scaleX <= 0.5f && scaleY <= 0.5f && currentImage.getWidth() >= 2 && currentImage.getHeight() >= 2) {
+            final int halfWidth = currentImage.getWidth() / 2;
+            final int halfHeight = currentImage.getHeight() / 2;
+            final Bitmap halfImage = new ImagePipeline().addStage(scale(halfWidth, halfHeight)).render(currentImage);
+
+            final float stepX = (float)currentImage.getWidth() / halfWidth;
+            final float stepY = (float)currentImage.getHeight() / halfHeight;
+            drawMatrix.preScale(stepX, stepY);
+            scaleX *= stepX;
+            scaleY *= stepY;
+
+            if (currentImage != sourceImage) {
+                BitmapPool.getInstance().put(currentImage);
+            }
+            currentImage = halfImage;
+        }
+        return currentImage;
+    }
+
+    private Paint getPaint(final boolean withColorFilter) {
+        Paint paint = new Paint(this.resampling == Resampling.FAST ? 0 : Paint.FILTER_BITMAP_FLAG);
+        if (this.hasColorFilter && withColorFilter) {
+            paint.setColorFilter(new ColorMatrixColorFilter(this.colorMatrix));
+        }
+        return paint;
+    }
+
+    private boolean isKernelColorFilter() {
+        return this.hasColorFilter && this.kernelMinPixels >= 0
+                && (long)this.outputWidth * this.outputHeight >= this.kernelMinPixels;
+    }
+
+    /**
+     * Applies the composed color matrix to the image in place, in row stripes across the common ForkJoin pool.
+     */
+    private void applyColorKernel(final Bitmap image) {
+        final int width = image.getWidth();
+        new ColorMatrixKernel(this.colorMatrix.getArray()).apply(new ColorMatrixKernel.PixelRows() {
+            @Override
+            public void read(int[] pixels, int top, int rows) {
+                image.getPixels(pixels, 0, width, 0, top, width, rows);
+            }
+
+            @Override
+            public void write(int[] pixels, int top, int rows) {
+                image.setPixels(pixels, 0, width, 0, top, width, rows);
+            }
+        }, width, image.getHeight(), ForkJoinPool.commonPool());
+    }
+
+    public static Stage scale(final int width, final int height) {
+        return new Stage() {
+            @Override
+            public void apply(ImagePipeline pipeline) {
+                pipeline.postScale(width, height);
+            }
+        };
+    }
+
+    public static Stage orient(final int orientation) {
+        return new Stage() {
+            @Override
+            public void apply(ImagePipeline pipeline) {
+                pipeline.postOrientation(orientation);
+            }
+        };
+    }
+
+    /**
+     * True when the EXIF orientation swaps width and height.
+     */
+    public static boolean isTransposed(final int orientation) {
+        return orientation >= ExifInterface.ORIENTATION_TRANSPOSE && orientation <= ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * Maps an image of the given size to its upright position, null for the normal or an unknown orientation.
+     */
+    public static Matrix getOrientationMatrix(final int orientation, final int width, final int height) {
+        final float[] values;
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                values = new float[] { -1, 0, width, 0, 1, 0 };
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                values = new float[] { -1, 0, width, 0, -1, height };
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                values = new float[] { 1, 0, 0, 0, -1, height };
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                values = new float[] { 0, 1, 0, 1, 0, 0 };
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                values = new float[] { 0, -1, height, 1, 0, 0 };
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                values = new float[] { 0, -1, height, -1, 0, width };
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                values = new float[] { 0, 1, 0, -1, 0, width };
+                break;
+            default:
+                return null;
+        }
+
+        Matrix orientationMatrix = new Matrix();
+        orientationMatrix.setValues(new float[] { values[0], values[1], values[2], values[3], values[4], values[5], 0, 0, 1 });
+        return orientationMatrix;
+    }
+
+    public static Stage grayscale() {
+        return colorMatrix(ImageModifierUtil.GRAYSCALE_MATRIX);
+    }
+
+    public static Stage sepia() {
+        return colorMatrix(ColorMatrixKernel.sepia());
+    }
+
+    public static Stage brightness(final float value) {
+        return colorMatrix(ColorMatrixKernel.brightness(value));
+    }
+
+    public static Stage contrast(final float value) {
+        return colorMatrix(ColorMatrixKernel.contrast(value));
+    }
+
+    public static Stage saturation(final float value) {
+        return colorMatrix(ColorMatrixKernel.saturation(value));
+    }
+
+    public static Stage colorMatrix(final float[] colorMatrixArray) {
+        return new Stage() {
+            @Override
+            public void apply(ImagePipeline pipeline) {
+                pipeline.postColorMatrix(colorMatrixArray);
+            }
+        };
+    }
+}
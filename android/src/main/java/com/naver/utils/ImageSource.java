@@ -0,0 +1,271 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An image opened once for a whole request. The bounds decode, the pixel decode and the EXIF read
+ * all use the same file path or file descriptor instead of opening the URI again.
+ * A data URI is decoded from the URI string on every read instead of being kept as decoded data.
+ */
+public class ImageSource implements Closeable {
+
+    private static final String URI_DATA = "data";
+    private static final String URI_CONTENT = "content";
+
+    private static final List<String> URI_FILE_CONTENT = Collections.unmodifiableList(Arrays.asList("file", "content"));
+
+    // everything BitmapFactory decodes, heif from Android 9 and avif from Android 12
+    private static List<String> LIST_OF_IMAGE_TYPE = Collections.unmodifiableList(Arrays.asList(
+            "image/jpg", "image/jpeg", "image/pjpeg", "image/png", "image/webp", "image/gif", "image/bmp", "image/x-ms-bmp",
+            "image/vnd.wap.wbmp", "image/x-icon", "image/vnd.microsoft.icon", "image/heic", "image/heif", "image/avif"));
+
+    private final Context context;
+    private final Uri imageURI;
+
+    private String filePath;
+    private ParcelFileDescriptor fileDescriptor;
+    private String dataURI;
+    private int dataStart;
+
+    private boolean isPrepared = false;
+    private ExifInterface exifInterface;
+
+    private ImageJob job = null;
+
+    private ImageSource(final Context context, final Uri imageURI) {
+        this.context = context;
+        this.imageURI = imageURI;
+    }
+
+    /**
+     * Nothing is read until the first decode or EXIF access.
+     */
+    public static ImageSource open(final Context context, final Uri imageURI) throws Exception {
+        if (imageURI == null) {
+            throw new Exception("imageURI must not be null.");
+        }
+
+        return new ImageSource(context, imageURI);
+    }
+
+    /**
+     * The path a file URI is read from, shared with the result cache so both see the same file.
+     */
+    public static String getFilePath(final Uri imageURI) {
+        return imageURI.getEncodedPath();
+    }
+
+    private void prepare() throws Exception {
+        if (this.isPrepared) {
+            return;
+        }
+        this.isPrepared = true;
+
+        final String imageURIScheme = this.imageURI.getScheme();
+        if (StringUtils.isStringValid(imageURIScheme) == false || URI_FILE_CONTENT.contains(imageURIScheme.toLowerCase())) {
+            if (imageURIScheme == null || imageURIScheme.equalsIgnoreCase(URI_CONTENT) == false) {
+                this.filePath = getFilePath(this.imageURI);
+            } else {
+                try {
+                    this.fileDescriptor = this.context.getContentResolver().openFileDescriptor(this.imageURI, "r");
+                } catch (Exception ignore) {
+                    // not every provider hands out a seekable descriptor, fall back to reopening the stream
+                }
+            }
+        } else if (imageURIScheme.equalsIgnoreCase(URI_DATA)) {
+            this.dataURI = this.imageURI.toString();
+            this.dataStart = getDataStart(this.dataURI);
+        } else {
+            throw new Exception("image can't be loaded by URI.");
+        }
+    }
+
+    public Uri getURI() {
+        return this.imageURI;
+    }
+
+    /**
+     * Every following decode checks the job first and can be cancelled through it.
+     */
+    public void setJob(final ImageJob job) {
+        this.job = job;
+    }
+
+    /**
+     * Encoded size of the source in bytes, or -1 when the provider only hands out a stream.
+     */
+    public long getByteLength() throws Exception {
+        this.prepare();
+
+        if (this.filePath != null) {
+            return new File(this.filePath).length();
+        } else if (this.dataURI != null) {
+            return DataURIInputStream.getDecodedLength(this.dataURI, this.dataStart, this.dataURI.length());
+        } else if (this.fileDescriptor != null) {
+            return this.fileDescriptor.getStatSize();
+        }
+        return -1;
+    }
+
+    public Bitmap decode(final BitmapFactory.Options options) throws Exception {
+        final ImageJob currentJob = this.job;
+        if (currentJob == null) {
+            return this.decodeSource(options);
+        }
+
+        currentJob.beginDecode(options);
+        try {
+            final Bitmap image = this.decodeSource(options);
+            if (currentJob.isCancelled() && image != null && options.inJustDecodeBounds == false) {
+                ImageModifierUtil.releaseBitmap(image);
+            }
+            currentJob.checkpoint(ImageMetrics.STAGE_DECODE);
+            return image;
+        } finally {
+            currentJob.endDecode();
+        }
+    }
+
+    private Bitmap decodeSource(final BitmapFactory.Options options) throws Exception {
+        this.prepare();
+
+        if (this.filePath != null) {
+            return BitmapFactory.decodeFile(this.filePath, options);
+        } else if (this.dataURI != null) {
+            try(InputStream input = this.openDataStream()) {
+                return BitmapFactory.decodeStream(input, null, options);
+            }
+        } else if (this.fileDescriptor != null) {
+            this.rewind();
+            return BitmapFactory.decodeFileDescriptor(this.fileDescriptor.getFileDescriptor(), null, options);
+        }
+
+        try(InputStream input = this.context.getContentResolver().openInputStream(this.imageURI)) {
+            return BitmapFactory.decodeStream(input, null, options);
+        } catch (Exception ex) {
+            throw new Exception("An error occurred while working on Bitmap processing by URI.");
+        }
+    }
+
+    public BitmapRegionDecoder newRegionDecoder() throws Exception {
+        this.prepare();
+
+        if (this.filePath != null) {
+            return BitmapRegionDecoder.newInstance(this.filePath, false);
+        } else if (this.dataURI != null) {
+            try(InputStream input = this.openDataStream()) {
+                return BitmapRegionDecoder.newInstance(input, false);
+            }
+        } else if (this.fileDescriptor != null) {
+            this.rewind();
+            return BitmapRegionDecoder.newInstance(this.fileDescriptor.getFileDescriptor(), false);
+        }
+
+        try(InputStream input = this.context.getContentResolver().openInputStream(this.imageURI)) {
+            return BitmapRegionDecoder.newInstance(input, false);
+        }
+    }
+
+    /**
+     * EXIF of the image, read once and kept for the lifetime of the source.
+     */
+    public ExifInterface getExifInterface() throws Exception {
+        if (this.exifInterface != null) {
+            return this.exifInterface;
+        }
+
+        this.prepare();
+
+        if (this.filePath != null) {
+            this.exifInterface = new ExifInterface(this.filePath);
+        } else if (this.dataURI != null) {
+            try(InputStream input = this.openDataStream()) {
+                this.exifInterface = new ExifInterface(input);
+            }
+        } else if (this.fileDescriptor != null) {
+            this.rewind();
+            this.exifInterface = new ExifInterface(this.fileDescriptor.getFileDescriptor());
+        } else {
+            try(InputStream input = this.context.getContentResolver().openInputStream(this.imageURI)) {
+                this.exifInterface = new ExifInterface(input);
+            }
+        }
+
+        return this.exifInterface;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.fileDescriptor != null) {
+            this.fileDescriptor.close();
+            this.fileDescriptor = null;
+        }
+        this.dataURI = null;
+    }
+
+    private void rewind() throws Exception {
+        Os.lseek(this.fileDescriptor.getFileDescriptor(), 0, OsConstants.SEEK_SET);
+    }
+
+    private InputStream openDataStream() {
+        return new DataURIInputStream(this.dataURI, this.dataStart, this.dataURI.length());
+    }
+
+    /**
+     * Validates the header of data:[<mediatype>][;<parameter>]*[;base64],<data> and returns where the data starts.
+     * Only the header is copied, the data is read from the URI string later.
+     * Without the base64 token the data is still read as base64, as before.
+     */
+    private static int getDataStart(final String dataURI) throws Exception {
+        final int headerStart = dataURI.indexOf(':') + 1;
+        final int splitLocation = dataURI.indexOf(',', headerStart);
+        if (splitLocation != -1) {
+            final String[] header = dataURI.substring(headerStart, splitLocation).split(";");
+            final String imageType = header[0].trim().replace('\\', '/').toLowerCase();
+            if (LIST_OF_IMAGE_TYPE.contains(imageType)) {
+                return splitLocation + 1;
+            }
+        }
+
+        throw new Exception("An error occurred while working on Bitmap base64 processing by URI.");
+    }
+}
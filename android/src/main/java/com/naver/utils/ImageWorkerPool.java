@@ -0,0 +1,148 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded executor for image jobs. When every worker is busy and the queue is full,
+ * execute throws RejectedExecutionException instead of queueing without limit.
+ * Queued jobs start by priority, higher first, and in submission order within a priority.
+ */
+public class ImageWorkerPool {
+
+    public static final int DEFAULT_THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 64;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(1);
+    private static final AtomicLong TASK_SEQUENCE = new AtomicLong(0);
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNImageModifier-worker-" + THREAD_NUMBER.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+        private final Runnable task;
+        private final int priority;
+        private final long sequence;
+
+        PrioritizedTask(final Runnable task, final int priority) {
+            this.task = task;
+            this.priority = priority;
+            this.sequence = TASK_SEQUENCE.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (this.priority != other.priority) {
+                return this.priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private ThreadPoolExecutor executor;
+    private int threadCount;
+    private int maxQueueSize;
+
+    public ImageWorkerPool() {
+        this(DEFAULT_THREAD_COUNT, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    public ImageWorkerPool(final int threadCount, final int maxQueueSize) {
+        this.configure(threadCount, maxQueueSize);
+    }
+
+    public void execute(final Runnable task) throws RejectedExecutionException {
+        this.execute(task, ImageJob.DEFAULT_PRIORITY);
+    }
+
+    /**
+     * The priority queue itself is unbounded, so maxQueueSize is checked here.
+     */
+    public synchronized void execute(final Runnable task, final int priority) throws RejectedExecutionException {
+        if (this.executor.getQueue().size() >= this.maxQueueSize) {
+            throw new RejectedExecutionException("image worker queue is full. (threads: " + this.threadCount
+                    + ", queue: " + this.maxQueueSize + ")");
+        }
+
+        this.executor.execute(new PrioritizedTask(task, priority));
+    }
+
+    /**
+     * Replaces the executor. Jobs already queued on the previous executor still run to completion.
+     */
+    public synchronized void configure(final int threadCount, final int maxQueueSize) {
+        this.threadCount = Math.max(1, threadCount);
+        this.maxQueueSize = Math.max(1, maxQueueSize);
+
+        final ThreadPoolExecutor previousExecutor = this.executor;
+
+        this.executor = new ThreadPoolExecutor(this.threadCount, this.threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(this.maxQueueSize), THREAD_FACTORY, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        if (previousExecutor != null) {
+            previousExecutor.shutdown();
+        }
+    }
+
+    public synchronized void shutdown() {
+        this.executor.shutdown();
+    }
+
+    public synchronized int getThreadCount() {
+        return this.threadCount;
+    }
+
+    public synchronized int getMaxQueueSize() {
+        return this.maxQueueSize;
+    }
+
+    public synchronized int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public synchronized int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admission control of the requests by their estimated bitmap bytes. A request reserves its bytes
+ * against the budget before anything is decoded, and releases them once its bitmaps are gone.
+ */
+public class MemoryGovernor {
+
+    public enum Policy {
+        // wait until the reservation fits, a request alone is always admitted
+        QUEUE,
+        // halve the output until the reservation fits what is left, wait when nothing fits
+        DOWNSCALE,
+        // fail when the reservation does not fit right away
+        REJECT
+    }
+
+    /**
+     * The bytes a request needs when its output is divided by downscale, a power of two.
+     */
+    public interface Estimator {
+        long estimate(int downscale);
+    }
+
+    private static final int BUDGET_DIVIDER = 2;
+    private static final int MAX_DOWNSCALE = 64;
+    private static final long DEFAULT_QUEUE_TIMEOUT_MS = 30 * 1000;
+
+    private static MemoryGovernor instance;
+
+    /**
+     * The default budget is half of the larger of the Java heap limit and the memory class.
+     * Bitmap pixels are on the native heap since Android 8, so neither is a hard limit for them,
+     * but both scale with what the device gives the app.
+     */
+    public static synchronized MemoryGovernor getInstance(final Context context) {
+        if (instance == null) {
+            ActivityManager activityManager = (ActivityManager)context.getSystemService(Context.ACTIVITY_SERVICE);
+            final long memoryClassBytes = (long)activityManager.getMemoryClass() * 1024 * 1024;
+            instance = new MemoryGovernor(Math.max(Runtime.getRuntime().maxMemory(), memoryClassBytes) / BUDGET_DIVIDER);
+        }
+        return instance;
+    }
+
+    private final Map<Long, Reservation> reservations = new LinkedHashMap<>();
+
+    private long budgetBytes;
+    private long reservedBytes = 0;
+    private Policy policy = Policy.QUEUE;
+    private long queueTimeoutMs = DEFAULT_QUEUE_TIMEOUT_MS;
+
+    private long nextId = 0;
+    private int waitingCount = 0;
+    private long rejectedCount = 0;
+    private long downscaledCount = 0;
+
+    public MemoryGovernor(final long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Reserves the bytes of a request by the current policy. Blocks while queued,
+     * throws when rejected or when the queue timeout passes, and as soon as the job is cancelled.
+     */
+    public synchronized Reservation acquire(final String label, final Estimator estimator, final ImageJob job) throws Exception {
+        int downscale = 1;
+        long bytes = estimator.estimate(downscale);
+
+        if (this.policy == Policy.REJECT) {
+            if (this.fits(bytes) == false) {
+                this.rejectedCount++;
+                throw new Exception("not enough memory for the image, " + bytes + " bytes needed, "
+                        + Math.max(0, this.budgetBytes - this.reservedBytes) + " bytes available.");
+            }
+        } else if (this.policy == Policy.DOWNSCALE) {
+            // the smallest downscale that fits what is left now, else the smallest one that fits the budget alone
+            int fitDownscale = downscale;
+            while (this.fits(estimator.estimate(fitDownscale)) == false && fitDownscale < MAX_DOWNSCALE) {
+                fitDownscale *= 2;
+            }
+            if (this.fits(estimator.estimate(fitDownscale)) == false) {
+                fitDownscale = 1;
+                while (estimator.estimate(fitDownscale) > this.budgetBytes && fitDownscale < MAX_DOWNSCALE) {
+                    fitDownscale *= 2;
+                }
+            }
+            if (fitDownscale != downscale) {
+                this.downscaledCount++;
+                downscale = fitDownscale;
+                bytes = estimator.estimate(downscale);
+            }
+        }
+
+        this.waitUntilFits(bytes, job);
+
+        Reservation reservation = new Reservation(this.nextId++, label, bytes, downscale);
+        this.reservations.put(reservation.id, reservation);
+        this.reservedBytes += bytes;
+        return reservation;
+    }
+
+    public synchronized void configure(final Policy policy, final long budgetBytes, final long queueTimeoutMs) {
+        this.policy = policy;
+        this.budgetBytes = Math.max(0, budgetBytes);
+        this.queueTimeoutMs = Math.max(0, queueTimeoutMs);
+        this.notifyAll();
+    }
+
+    public synchronized Policy getPolicy() {
+        return this.policy;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return this.budgetBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return this.reservedBytes;
+    }
+
+    public synchronized long getQueueTimeoutMs() {
+        return this.queueTimeoutMs;
+    }
+
+    public synchronized int getWaitingCount() {
+        return this.waitingCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return this.rejectedCount;
+    }
+
+    public synchronized long getDownscaledCount() {
+        return this.downscaledCount;
+    }
+
+    /**
+     * Snapshot of the active reservations, oldest first.
+     */
+    public synchronized List<Reservation> getReservations() {
+        return new ArrayList<>(this.reservations.values());
+    }
+
+    private boolean fits(final long bytes) {
+        return this.reservedBytes + bytes <= this.budgetBytes;
+    }
+
+    private void waitUntilFits(final long bytes, final ImageJob job) throws Exception {
+        final long deadline = System.currentTimeMillis() + this.queueTimeoutMs;
+        this.waitingCount++;
+        if (job != null) {
+            job.setCancelWakeup(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (MemoryGovernor.this) {
+                        MemoryGovernor.this.notifyAll();
+                    }
+                }
+            });
+        }
+        try {
+            while (this.fits(bytes) == false && this.reservations.isEmpty() == false) {
+                if (job != null) {
+                    job.checkpoint(ImageMetrics.STAGE_ADMISSION);
+                }
+
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    this.rejectedCount++;
+                    throw new Exception("timed out waiting for memory for the image, " + bytes + " bytes needed.");
+                }
+                this.wait(remaining);
+            }
+        } finally {
+            this.waitingCount--;
+            if (job != null) {
+                job.setCancelWakeup(null);
+            }
+        }
+    }
+
+    private synchronized void release(final Reservation reservation) {
+        if (this.reservations.remove(reservation.id) != null) {
+            this.reservedBytes -= reservation.bytes;
+            this.notifyAll();
+        }
+    }
+
+    public class Reservation implements AutoCloseable {
+        private final long id;
+        private final String label;
+        private final long bytes;
+        private final int downscale;
+        private final long createdTime = System.currentTimeMillis();
+
+        private Reservation(final long id, final String label, final long bytes, final int downscale) {
+            this.id = id;
+            this.label = label;
+            this.bytes = bytes;
+            this.downscale = downscale;
+        }
+
+        public long getId() {
+            return this.id;
+        }
+
+        public String getLabel() {
+            return this.label;
+        }
+
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        /**
+         * The factor the output has to be divided by, 1 unless the DOWNSCALE policy shrank the request.
+         */
+        public int getDownscale() {
+            return this.downscale;
+        }
+
+        public long getAgeMs() {
+            return System.currentTimeMillis() - this.createdTime;
+        }
+
+        @Override
+        public void close() {
+            MemoryGovernor.this.release(this);
+        }
+    }
+}
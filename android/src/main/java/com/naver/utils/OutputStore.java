@@ -0,0 +1,269 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Directory of the results returned as files, bounded by a byte and a file count quota.
+ * A file is written under a temp name and renamed once complete, so a returned URI never points
+ * to a partial file. Over the quota the oldest files are deleted on a background thread.
+ */
+public class OutputStore {
+
+    private static final String OUTPUT_DIRECTORY = "RNImageModifier/outputs";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long DEFAULT_MAX_BYTES = 200L * 1024 * 1024;
+    private static final int DEFAULT_MAX_COUNT = 1000;
+
+    private static OutputStore instance;
+
+    public static synchronized OutputStore getInstance(final Context context) {
+        if (instance == null) {
+            instance = new OutputStore(new File(context.getCacheDir(), OUTPUT_DIRECTORY), DEFAULT_MAX_BYTES, DEFAULT_MAX_COUNT);
+        }
+        return instance;
+    }
+
+    private final File outputDirectory;
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    private final ExecutorService cleaner = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RNImageModifierOutputCleaner");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private long maxBytes;
+    private int maxCount;
+
+    // file name -> length, oldest first
+    private LinkedHashMap<String, Long> entries;
+    private long currentBytes = 0;
+    private boolean isTrimScheduled = false;
+    private long evictionCount = 0;
+
+    public OutputStore(final File outputDirectory, final long maxBytes, final int maxCount) {
+        this.outputDirectory = outputDirectory;
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * A new empty temp file named "{time}_{sequence}.{extension}.tmp", to be passed to commit afterwards.
+     */
+    public File newTempFile(final String extension) throws Exception {
+        synchronized (this) {
+            this.loadEntries();
+        }
+        if (this.outputDirectory.exists() == false && this.outputDirectory.mkdirs() == false && this.outputDirectory.exists() == false) {
+            throw new Exception("output directory can't be created.");
+        }
+
+        final String suffix = ".".concat(extension.toLowerCase());
+        while (true) {
+            final String name = System.currentTimeMillis() + "_" + this.sequence.incrementAndGet() + suffix;
+            File tempFile = new File(this.outputDirectory, name.concat(TEMP_FILE_SUFFIX));
+            if (new File(this.outputDirectory, name).exists() == false && tempFile.createNewFile()) {
+                return tempFile;
+            }
+        }
+    }
+
+    /**
+     * Renames a finished temp file to its final name and counts it against the quota.
+     */
+    public synchronized File commit(final File tempFile) throws Exception {
+        this.loadEntries();
+
+        final String tempName = tempFile.getName();
+        if (tempName.endsWith(TEMP_FILE_SUFFIX) == false) {
+            throw new Exception("not a temp file of the output store.");
+        }
+
+        File outputFile = new File(this.outputDirectory, tempName.substring(0, tempName.length() - TEMP_FILE_SUFFIX.length()));
+        if (tempFile.renameTo(outputFile) == false) {
+            tempFile.delete();
+            throw new Exception("output file can't be saved.");
+        }
+
+        this.entries.put(outputFile.getName(), outputFile.length());
+        this.currentBytes += outputFile.length();
+
+        this.scheduleTrim();
+        return outputFile;
+    }
+
+    /**
+     * Deletes the given files of the store, files outside of it are ignored. Returns how many were deleted.
+     */
+    public synchronized int release(final List<File> files) {
+        this.loadEntries();
+
+        int releasedCount = 0;
+        for (File file : files) {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            if (parent == null || parent.equals(this.outputDirectory.getAbsoluteFile()) == false) {
+                continue;
+            }
+
+            final Long length = this.entries.remove(file.getName());
+            if (length != null) {
+                this.currentBytes -= length;
+            }
+            if (file.delete()) {
+                releasedCount++;
+            }
+        }
+        return releasedCount;
+    }
+
+    public synchronized int clear() {
+        this.loadEntries();
+
+        final int count = this.entries.size();
+        for (String name : this.entries.keySet()) {
+            new File(this.outputDirectory, name).delete();
+        }
+        this.entries.clear();
+        this.currentBytes = 0;
+        return count;
+    }
+
+    public synchronized void configure(final long maxBytes, final int maxCount) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxCount = Math.max(0, maxCount);
+        this.scheduleTrim();
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized int getMaxCount() {
+        return this.maxCount;
+    }
+
+    public synchronized long getCurrentBytes() {
+        this.loadEntries();
+        return this.currentBytes;
+    }
+
+    public synchronized int getCount() {
+        this.loadEntries();
+        return this.entries.size();
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    private void scheduleTrim() {
+        if (this.isTrimScheduled || (this.currentBytes <= this.maxBytes && this.entries.size() <= this.maxCount)) {
+            return;
+        }
+
+        this.isTrimScheduled = true;
+        this.cleaner.execute(new Runnable() {
+            @Override
+            public void run() {
+                trim();
+            }
+        });
+    }
+
+    /**
+     * Deletes the oldest files until both quotas hold. The deletes run outside of the lock.
+     */
+    private void trim() {
+        List<File> evictedFiles = new ArrayList<>();
+        synchronized (this) {
+            this.isTrimScheduled = false;
+
+            Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+            while ((this.currentBytes > this.maxBytes || this.entries.size() > this.maxCount) && iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                evictedFiles.add(new File(this.outputDirectory, entry.getKey()));
+                this.currentBytes -= entry.getValue();
+                this.evictionCount++;
+                iterator.remove();
+            }
+        }
+
+        for (File evictedFile : evictedFiles) {
+            evictedFile.delete();
+        }
+    }
+
+    private void loadEntries() {
+        if (this.entries != null) {
+            return;
+        }
+
+        this.entries = new LinkedHashMap<>();
+        this.currentBytes = 0;
+
+        File[] files = this.outputDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> outputFiles = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(outputFiles, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        for (File outputFile : outputFiles) {
+            if (outputFile.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                // left over by a process that died while writing
+                outputFile.delete();
+                continue;
+            }
+            this.entries.put(outputFile.getName(), outputFile.length());
+            this.currentBytes += outputFile.length();
+        }
+        this.scheduleTrim();
+    }
+}
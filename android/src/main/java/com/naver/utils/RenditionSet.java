@@ -0,0 +1,314 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.media.ExifInterface;
+import android.util.Base64;
+import android.util.Base64OutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Several output sizes of one decoded source. The largest rendition is drawn from the source and
+ * every smaller one from the next larger, halving first when the step is more than 2x so the
+ * bilinear filter does not skip source pixels. The encodes run in parallel.
+ * Owns every bitmap it renders and the source given to render, close releases them.
+ * With an orientation, the draw from the source also turns it upright, so every rendition is upright.
+ */
+public class RenditionSet implements Closeable {
+
+    public static class Rendition {
+        private final int maxEdge;
+        private final float quality;
+        private final Bitmap.CompressFormat compressFormat;
+        private final boolean isGrayscale;
+
+        private int width;
+        private int height;
+
+        private Bitmap image;
+        private GrayscaleImage grayscaleImage;
+
+        private File outputFile;
+        private String base64String;
+        private long byteLength;
+        private Exception error;
+
+        public Rendition(final int maxEdge, final float quality, final Bitmap.CompressFormat compressFormat, final boolean isGrayscale) {
+            this.maxEdge = maxEdge;
+            this.quality = quality;
+            this.compressFormat = compressFormat;
+            this.isGrayscale = isGrayscale;
+        }
+
+        public int getMaxEdge() {
+            return this.maxEdge;
+        }
+
+        public Bitmap.CompressFormat getCompressFormat() {
+            return this.compressFormat;
+        }
+
+        public int getWidth() {
+            return this.width;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+
+        public boolean isSingleChannel() {
+            return this.grayscaleImage != null;
+        }
+
+        /**
+         * Encodes into this file, base64 when no file is set.
+         */
+        public void setOutputFile(final File outputFile) {
+            this.outputFile = outputFile;
+        }
+
+        public File getOutputFile() {
+            return this.outputFile;
+        }
+
+        public String getBase64String() {
+            return this.base64String;
+        }
+
+        public long getByteLength() {
+            return this.byteLength;
+        }
+
+        public Exception getError() {
+            return this.error;
+        }
+
+        private long getBytes() {
+            return (long)this.width * this.height * 4;
+        }
+
+        private void encode() throws Exception {
+            if (this.outputFile == null) {
+                ByteArrayOutputStream base64OutputBuffer = new ByteArrayOutputStream();
+                try(Base64OutputStream base64OutputStream = new Base64OutputStream(base64OutputBuffer, Base64.DEFAULT)) {
+                    this.write(base64OutputStream);
+                }
+                this.base64String = base64OutputBuffer.toString("US-ASCII");
+                this.byteLength = this.base64String.length() / 4 * 3;
+                return;
+            }
+
+            if (this.outputFile.createNewFile() == false) {
+                throw new Exception("image file already exists.");
+            }
+            try(OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(this.outputFile))) {
+                this.write(outputStream);
+            } catch (Exception ex) {
+                this.outputFile.delete();
+                throw ex;
+            }
+            this.byteLength = this.outputFile.length();
+        }
+
+        private void write(final OutputStream outputStream) throws Exception {
+            if (this.grayscaleImage != null) {
+                this.grayscaleImage.writeTo(outputStream, this.compressFormat, this.quality);
+            } else if (this.image.compress(this.compressFormat, (int)(this.quality * 100), outputStream) == false) {
+                throw new Exception("Bitmap.compress failed.");
+            }
+        }
+    }
+
+    private final List<Rendition> renditions;
+    private final Set<Bitmap> bitmaps = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    private int orientation = ExifInterface.ORIENTATION_NORMAL;
+
+    public RenditionSet(final List<Rendition> renditions) {
+        this.renditions = renditions;
+    }
+
+    /**
+     * EXIF orientation of the source, set before prepare.
+     */
+    public RenditionSet setOrientation(final int orientation) {
+        this.orientation = orientation;
+        return this;
+    }
+
+    /**
+     * Sets the output size of every rendition, its longer edge at most maxEdge / downscale and never upscaled.
+     */
+    public void prepare(final int sourceWidth, final int sourceHeight, final int downscale) {
+        final boolean isTransposed = ImagePipeline.isTransposed(this.orientation);
+        final int longEdge = Math.max(sourceWidth, sourceHeight);
+        for (Rendition rendition : this.renditions) {
+            final float scale = Math.min(1.0f, (float)rendition.maxEdge / downscale / longEdge);
+            rendition.width = Math.max(1, Math.round((isTransposed ? sourceHeight : sourceWidth) * scale));
+            rendition.height = Math.max(1, Math.round((isTransposed ? sourceWidth : sourceHeight) * scale));
+        }
+    }
+
+    /**
+     * The sample size to decode the source at for the largest rendition, after prepare.
+     */
+    public int getInSampleSize(final int sourceWidth, final int sourceHeight) {
+        final Rendition largest = this.getLargest();
+        final boolean isTransposed = ImagePipeline.isTransposed(this.orientation);
+        return ImageModifierUtil.calculateInSampleSize(sourceWidth, sourceHeight,
+                isTransposed ? largest.height : largest.width, isTransposed ? largest.width : largest.height);
+    }
+
+    public Rendition getLargest() {
+        Rendition largest = null;
+        for (Rendition rendition : this.renditions) {
+            if (largest == null || rendition.getBytes() > largest.getBytes()) {
+                largest = rendition;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Bitmap bytes of all the renditions, which are alive together until they are encoded.
+     */
+    public long getTotalBytes() {
+        long totalBytes = 0;
+        for (Rendition rendition : this.renditions) {
+            totalBytes += rendition.getBytes();
+        }
+        return totalBytes;
+    }
+
+    public void render(final Bitmap sourceImage) throws Exception {
+        this.bitmaps.add(sourceImage);
+
+        List<Rendition> sorted = new ArrayList<>(this.renditions);
+        Collections.sort(sorted, new Comparator<Rendition>() {
+            @Override
+            public int compare(Rendition a, Rendition b) {
+                return Long.compare(b.getBytes(), a.getBytes());
+            }
+        });
+
+        Bitmap previousImage = sourceImage;
+        int orientation = this.orientation;
+        for (Rendition rendition : sorted) {
+            final Bitmap scaledImage = this.downscale(previousImage, rendition.width, rendition.height, orientation);
+            this.bitmaps.add(scaledImage);
+            // the next renditions are drawn from this one, which is upright already
+            orientation = ExifInterface.ORIENTATION_NORMAL;
+
+            if (rendition.isGrayscale && GrayscaleImage.isEncodable(rendition.compressFormat) && scaledImage.hasAlpha() == false) {
+                rendition.grayscaleImage = new ImagePipeline().renderGrayscale(scaledImage);
+            } else if (rendition.isGrayscale) {
+                rendition.image = new ImagePipeline().addStage(ImagePipeline.grayscale()).render(scaledImage);
+                this.bitmaps.add(rendition.image);
+            } else {
+                rendition.image = scaledImage;
+            }
+            previousImage = scaledImage;
+        }
+    }
+
+    /**
+     * Encodes every rendition on the executor. A failed rendition keeps its error, the others are still encoded.
+     */
+    public void encode(final ExecutorService executor) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (final Rendition rendition : this.renditions) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        rendition.encode();
+                    } catch (Exception ex) {
+                        rendition.error = ex;
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Bitmap bitmap : this.bitmaps) {
+            ImageModifierUtil.releaseBitmap(bitmap);
+        }
+        this.bitmaps.clear();
+        for (Rendition rendition : this.renditions) {
+            rendition.image = null;
+            rendition.grayscaleImage = null;
+        }
+    }
+
+    /**
+     * width and height are the upright output size, the orientation is applied by the last draw.
+     */
+    private Bitmap downscale(final Bitmap image, final int width, final int height, final int orientation) throws Exception {
+        final boolean isTransposed = ImagePipeline.isTransposed(orientation);
+        final int scaledWidth = isTransposed ? height : width;
+        final int scaledHeight = isTransposed ? width : height;
+
+        Bitmap currentImage = image;
+        while (currentImage.getWidth() / 2 >= scaledWidth && currentImage.getHeight() / 2 >= scaledHeight) {
+            final Bitmap halfImage = new ImagePipeline()
+                    .addStage(ImagePipeline.scale(currentImage.getWidth() / 2, currentImage.getHeight() / 2))
+                    .render(currentImage);
+            if (currentImage != image) {
+                ImageModifierUtil.releaseBitmap(currentImage);
+            }
+            currentImage = halfImage;
+        }
+
+        final Bitmap scaledImage = new ImagePipeline()
+                .addStage(ImagePipeline.scale(scaledWidth, scaledHeight))
+                .addStage(ImagePipeline.orient(orientation))
+                .render(currentImage);
+        if (currentImage != image && currentImage != scaledImage) {
+            ImageModifierUtil.releaseBitmap(currentImage);
+        }
+        return scaledImage;
+    }
+}
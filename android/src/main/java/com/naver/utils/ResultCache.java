@@ -0,0 +1,322 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content addressed on-disk cache of encoded results, bounded by a byte budget with LRU eviction.
+ * An entry is named "{source hash}_{variant hash}.{format}", where the source hash covers only the URI
+ * (so every variant of one source can be invalidated together) and the variant hash covers the
+ * source identity (size, mtime or data digest) and the normalized parameters.
+ */
+public class ResultCache {
+
+    private static final String CACHE_DIRECTORY = "RNImageModifier/results";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+    private static final int DIGEST_CHUNK_LENGTH = 8 * 1024;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static ResultCache instance;
+
+    public static synchronized ResultCache getInstance(final Context context) {
+        if (instance == null) {
+            instance = new ResultCache(new File(context.getCacheDir(), CACHE_DIRECTORY), DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    private final File cacheDirectory;
+    private long maxBytes;
+
+    // file name -> length, in access order
+    private LinkedHashMap<String, Long> entries;
+    private long currentBytes = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public ResultCache(final File cacheDirectory, final long maxBytes) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached result for the key, or null. A hit moves the entry to the most recently used position.
+     */
+    public synchronized File get(final String key) {
+        this.loadEntries();
+
+        final Long length = this.entries.get(key);
+        if (length != null) {
+            File cachedFile = new File(this.cacheDirectory, key);
+            if (cachedFile.exists()) {
+                cachedFile.setLastModified(System.currentTimeMillis());
+                this.hitCount++;
+                return cachedFile;
+            }
+
+            this.entries.remove(key);
+            this.currentBytes -= length;
+        }
+
+        this.missCount++;
+        return null;
+    }
+
+    public synchronized boolean contains(final String key) {
+        this.loadEntries();
+        return this.entries.containsKey(key) && new File(this.cacheDirectory, key).exists();
+    }
+
+    /**
+     * A unique file to write a new result into, to be passed to commit afterwards.
+     */
+    public File newTempFile(final String key) throws Exception {
+        if (this.cacheDirectory.exists() == false && this.cacheDirectory.mkdirs() == false && this.cacheDirectory.exists() == false) {
+            throw new Exception("result cache directory can't be created.");
+        }
+        return File.createTempFile(key, TEMP_FILE_SUFFIX, this.cacheDirectory);
+    }
+
+    /**
+     * Moves a finished temp file into place, replacing a concurrent result for the same key.
+     * Returns null and leaves the temp file alone when it is larger than the whole cache.
+     */
+    public synchronized File commit(final String key, final File tempFile) throws Exception {
+        this.loadEntries();
+
+        if (tempFile.length() > this.maxBytes) {
+            // trimToSize would evict it right away, the caller keeps it somewhere else
+            return null;
+        }
+
+        File cachedFile = new File(this.cacheDirectory, key);
+        if (tempFile.renameTo(cachedFile) == false) {
+            tempFile.delete();
+            throw new Exception("result cache entry can't be saved.");
+        }
+
+        final Long previousLength = this.entries.put(key, cachedFile.length());
+        if (previousLength != null) {
+            this.currentBytes -= previousLength;
+        }
+        this.currentBytes += cachedFile.length();
+
+        this.trimToSize(this.maxBytes);
+        return cachedFile;
+    }
+
+    /**
+     * Removes every cached variant of the source, or the whole cache when sourceURI is null.
+     */
+    public synchronized int invalidate(final Uri sourceURI) throws Exception {
+        this.loadEntries();
+
+        final String prefix = sourceURI != null ? getSourceHash(sourceURI).concat("_") : "";
+
+        int removedCount = 0;
+        Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                new File(this.cacheDirectory, entry.getKey()).delete();
+                this.currentBytes -= entry.getValue();
+                iterator.remove();
+                removedCount++;
+            }
+        }
+        return removedCount;
+    }
+
+    public synchronized void trimToSize(final long targetBytes) {
+        this.loadEntries();
+
+        Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+        while (this.currentBytes > targetBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            new File(this.cacheDirectory, entry.getKey()).delete();
+            this.currentBytes -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    public synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.trimToSize(this.maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        this.loadEntries();
+        return this.currentBytes;
+    }
+
+    public synchronized int getCount() {
+        this.loadEntries();
+        return this.entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Builds the entry name for a source and its normalized parameters.
+     */
+    public static String getKey(final Context context, final Uri sourceURI, final String normalizedParams, final String extension) throws Exception {
+        MessageDigest variantDigest = MessageDigest.getInstance("SHA-256");
+        updateDigest(variantDigest, getSourceIdentity(context, sourceURI));
+        updateDigest(variantDigest, "|");
+        updateDigest(variantDigest, normalizedParams);
+
+        return getSourceHash(sourceURI).concat("_").concat(toHex(variantDigest.digest(), 16)).concat(".").concat(extension.toLowerCase());
+    }
+
+    /**
+     * Short digest of the source URI, also a compact map key for data URIs.
+     */
+    public static String getSourceHash(final Uri sourceURI) throws Exception {
+        MessageDigest sourceDigest = MessageDigest.getInstance("SHA-256");
+        updateDigest(sourceDigest, sourceURI.toString());
+        return toHex(sourceDigest.digest(), 16);
+    }
+
+    /**
+     * Digest of the source URI and its identity (path, size and mtime of a file or a content URI),
+     * so a source overwritten under the same URI gets a new key.
+     */
+    public static String getSourceKey(final Context context, final Uri sourceURI) throws Exception {
+        MessageDigest sourceDigest = MessageDigest.getInstance("SHA-256");
+        updateDigest(sourceDigest, getSourceHash(sourceURI));
+        updateDigest(sourceDigest, "|");
+        updateDigest(sourceDigest, getSourceIdentity(context, sourceURI));
+        return toHex(sourceDigest.digest(), 16);
+    }
+
+    private static String getSourceIdentity(final Context context, final Uri sourceURI) throws Exception {
+        final String scheme = sourceURI.getScheme();
+        if (scheme == null || scheme.equalsIgnoreCase("file")) {
+            File sourceFile = new File(ImageSource.getFilePath(sourceURI));
+            return sourceFile.getAbsolutePath() + ":" + sourceFile.length() + ":" + sourceFile.lastModified();
+        } else if (scheme.equalsIgnoreCase("content")) {
+            try (ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(sourceURI, "r")) {
+                return sourceURI.toString() + ":" + (descriptor != null ? descriptor.getStatSize() : -1) + ":" + getLastModified(context, sourceURI);
+            }
+        }
+
+        // data URI, the URI itself is the content and is already covered by the source hash
+        return scheme;
+    }
+
+    /**
+     * Last modified time reported by the provider, or -1 when it has none.
+     */
+    private static long getLastModified(final Context context, final Uri sourceURI) {
+        final String column = DocumentsContract.isDocumentUri(context, sourceURI)
+                ? DocumentsContract.Document.COLUMN_LAST_MODIFIED : MediaStore.MediaColumns.DATE_MODIFIED;
+        try (Cursor cursor = context.getContentResolver().query(sourceURI, new String[]{column}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && cursor.isNull(0) == false) {
+                return cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            // not every provider knows the column
+        }
+        return -1;
+    }
+
+    private static void updateDigest(final MessageDigest digest, final String value) {
+        // in chunks, so a data URI is not copied into one more full size byte array
+        final int length = value.length();
+        for (int start = 0; start < length; start += DIGEST_CHUNK_LENGTH) {
+            digest.update(value.substring(start, Math.min(length, start + DIGEST_CHUNK_LENGTH)).getBytes(ASCII));
+        }
+    }
+
+    private static String toHex(final byte[] bytes, final int byteCount) {
+        StringBuilder builder = new StringBuilder(byteCount * 2);
+        for (int i = 0; i < byteCount && i < bytes.length; i++) {
+            builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(bytes[i] & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private void loadEntries() {
+        if (this.entries != null) {
+            return;
+        }
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.currentBytes = 0;
+
+        File[] files = this.cacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<File> cachedFiles = new ArrayList<>(Arrays.asList(files));
+        Collections.sort(cachedFiles, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+
+        for (File cachedFile : cachedFiles) {
+            if (cachedFile.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                // left over by a process that died while writing
+                cachedFile.delete();
+                continue;
+            }
+            this.entries.put(cachedFile.getName(), cachedFile.length());
+            this.currentBytes += cachedFile.length();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in LRU cache of decoded source bitmaps, bounded by a share of the app memory class.
+ * Entries are reference counted: an evicted bitmap still held by a request is handed to the
+ * BitmapPool only when that request releases it, so a cached bitmap is never reused while in use.
+ */
+public class SourceBitmapCache implements ComponentCallbacks2 {
+
+    private static final int MEMORY_CLASS_DIVIDER = 8;
+
+    private static SourceBitmapCache instance;
+
+    public static synchronized SourceBitmapCache getInstance(final Context context) {
+        if (instance == null) {
+            ActivityManager activityManager = (ActivityManager)context.getSystemService(Context.ACTIVITY_SERVICE);
+            final long maxBytes = (long)activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVIDER;
+
+            instance = new SourceBitmapCache(maxBytes);
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * Releases one reference of a cached bitmap. Returns false when the bitmap is not owned by the cache.
+     */
+    public static boolean releaseIfCached(final Bitmap bitmap) {
+        final SourceBitmapCache cache;
+        synchronized (SourceBitmapCache.class) {
+            cache = instance;
+        }
+        return cache != null && cache.release(bitmap);
+    }
+
+    private static class Entry {
+        final String key;
+        final Bitmap bitmap;
+        int referenceCount = 0;
+        boolean isEvicted = false;
+
+        Entry(final String key, final Bitmap bitmap) {
+            this.key = key;
+            this.bitmap = bitmap;
+        }
+    }
+
+    // "{source key}#{sample size}" -> entry, in access order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // every bitmap with references, including evicted ones
+    private final IdentityHashMap<Bitmap, Entry> owners = new IdentityHashMap<>();
+
+    private final long maxBytes;
+    private long currentBytes = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public SourceBitmapCache(final long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a cached decode of the source whose sample size is at most maxSampleSize (at least the
+     * requested resolution) with one reference taken, or null.
+     */
+    public synchronized Bitmap acquire(final String sourceKey, final int maxSampleSize) {
+        Entry bestEntry = null;
+        for (int sampleSize = maxSampleSize; sampleSize >= 1 && bestEntry == null; sampleSize /= 2) {
+            bestEntry = this.entries.get(getKey(sourceKey, sampleSize));
+        }
+
+        if (bestEntry == null) {
+            this.missCount++;
+            return null;
+        }
+
+        this.hitCount++;
+        bestEntry.referenceCount++;
+        return bestEntry.bitmap;
+    }
+
+    /**
+     * Caches a freshly decoded bitmap with one reference taken for the caller.
+     * Returns false when the bitmap is too large to be cached, the caller then keeps owning it.
+     */
+    public synchronized boolean put(final String sourceKey, final int sampleSize, final Bitmap bitmap) {
+        if (bitmap == null || bitmap.getAllocationByteCount() > this.maxBytes || this.owners.containsKey(bitmap)) {
+            return false;
+        }
+
+        Entry entry = new Entry(getKey(sourceKey, sampleSize), bitmap);
+        entry.referenceCount = 1;
+
+        Entry previousEntry = this.entries.put(entry.key, entry);
+        if (previousEntry != null) {
+            this.evict(previousEntry);
+        }
+
+        this.owners.put(bitmap, entry);
+        this.currentBytes += bitmap.getAllocationByteCount();
+
+        this.trimToSize(this.maxBytes);
+        return true;
+    }
+
+    public synchronized boolean release(final Bitmap bitmap) {
+        Entry entry = this.owners.get(bitmap);
+        if (entry == null) {
+            return false;
+        }
+
+        entry.referenceCount = Math.max(0, entry.referenceCount - 1);
+        if (entry.isEvicted && entry.referenceCount == 0) {
+            this.owners.remove(bitmap);
+            BitmapPool.getInstance().put(bitmap);
+        }
+        return true;
+    }
+
+    public synchronized void trimToSize(final long targetBytes) {
+        Iterator<Entry> iterator = this.entries.values().iterator();
+        while (this.currentBytes > targetBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            this.evict(entry);
+        }
+    }
+
+    public void clear() {
+        this.trimToSize(0);
+    }
+
+    public synchronized long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+
+    public synchronized int getCount() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            this.clear();
+            BitmapPool.getInstance().clear();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            this.trimToSize(this.getMaxBytes() / 2);
+            BitmapPool.getInstance().trimToSize(BitmapPool.getInstance().getMaxBytes() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        this.clear();
+        BitmapPool.getInstance().clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+
+    private void evict(final Entry entry) {
+        this.currentBytes -= entry.bitmap.getAllocationByteCount();
+        entry.isEvicted = true;
+        if (entry.referenceCount == 0) {
+            this.owners.remove(entry.bitmap);
+            BitmapPool.getInstance().put(entry.bitmap);
+        }
+    }
+
+    private static String getKey(final String sourceKey, final int sampleSize) {
+        return sourceKey.concat("#").concat(Integer.toString(sampleSize));
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+package com.naver.utils;
+
+import android.graphics.Bitmap;
+import android.util.Base64;
+import android.util.Base64OutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes an already transformed bitmap under a byte budget with a bounded number of compress calls.
+ * Quality is searched by bisection, and when even the lowest quality does not fit, the bitmap can
+ * optionally be scaled down, every size gets its own attempt budget. Two buffers are reused for every attempt:
+ * one for the attempt, one for the best result.
+ */
+public class TargetSizeEncoder {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 8;
+    public static final int MAX_DOWNSCALE_COUNT = 3;
+
+    private static final int MIN_QUALITY = 5;
+    // the scale estimate from the byte ratio overshoots a little, aim below the budget
+    private static final double DOWNSCALE_MARGIN = 0.9;
+
+    private ByteArrayOutputStream attemptBuffer;
+    private ByteArrayOutputStream resultBuffer;
+
+    private int quality = -1;
+    private int attemptCount = 0;
+    private boolean isFit = false;
+    private int width = 0;
+    private int height = 0;
+
+    /**
+     * Takes over the image, it is released when encoding is done.
+     * maxAttempts bounds the compress calls per size, so at most (MAX_DOWNSCALE_COUNT + 1) * maxAttempts in total.
+     */
+    public void encode(final Bitmap image, final Bitmap.CompressFormat compressFormat, final long maxBytes,
+                       final int maxQuality, final boolean allowDownscale, final int maxAttempts) throws Exception {
+        if (image == null) {
+            throw new Exception("image must not be null.");
+        }
+
+        // never more than the raw pixels, a large budget must not cost that much heap for a thumbnail
+        final int initialCapacity = (int)Math.min(Math.min(Integer.MAX_VALUE - 8, maxBytes + 1024), (long)image.getWidth() * image.getHeight() * 4);
+        this.attemptBuffer = new ByteArrayOutputStream(initialCapacity);
+        this.resultBuffer = new ByteArrayOutputStream(initialCapacity);
+
+        Bitmap currentImage = image;
+        try {
+            int downscaleCount = 0;
+            while (true) {
+                this.searchQuality(currentImage, compressFormat, maxBytes, Math.max(MIN_QUALITY, Math.min(100, maxQuality)), maxAttempts);
+                if (this.isFit || allowDownscale == false || downscaleCount >= MAX_DOWNSCALE_COUNT) {
+                    break;
+                }
+
+                final double scaleRatio = Math.sqrt((double)maxBytes / this.resultBuffer.size()) * DOWNSCALE_MARGIN;
+                final int scaledWidth = Math.max(1, (int)(currentImage.getWidth() * scaleRatio));
+                final int scaledHeight = Math.max(1, (int)(currentImage.getHeight() * scaleRatio));
+                if (scaledWidth == currentImage.getWidth() && scaledHeight == currentImage.getHeight()) {
+                    break;
+                }
+                currentImage = ImageModifierUtil.getImageByResize(currentImage, scaledWidth, scaledHeight, false);
+                downscaleCount++;
+            }
+        } finally {
+            ImageModifierUtil.releaseBitmap(currentImage);
+        }
+    }
+
+    public int getQuality() {
+        return this.quality;
+    }
+
+    public int getAttemptCount() {
+        return this.attemptCount;
+    }
+
+    public boolean isFit() {
+        return this.isFit;
+    }
+
+    public int getByteLength() {
+        return this.resultBuffer.size();
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public void writeTo(final File savePath) throws Exception {
+        if (savePath.createNewFile() == false) {
+            throw new Exception("image file already exists.");
+        }
+
+        try(OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(savePath))) {
+            this.resultBuffer.writeTo(outputStream);
+        } catch (Exception ex) {
+            savePath.delete();
+            throw ex;
+        }
+    }
+
+    public void writeTo(final OutputStream outputStream) throws Exception {
+        this.resultBuffer.writeTo(outputStream);
+    }
+
+    public String toBase64() throws Exception {
+        ByteArrayOutputStream base64OutputBuffer = new ByteArrayOutputStream(this.resultBuffer.size() * 4 / 3 + 1024);
+        try(Base64OutputStream base64OutputStream = new Base64OutputStream(base64OutputBuffer, Base64.DEFAULT)) {
+            this.resultBuffer.writeTo(base64OutputStream);
+        }
+        return base64OutputBuffer.toString("US-ASCII");
+    }
+
+    /**
+     * Bisects the quality of one size, with maxAttempts compress calls at most.
+     */
+    private void searchQuality(final Bitmap image, final Bitmap.CompressFormat compressFormat, final long maxBytes,
+                               final int maxQuality, final int maxAttempts) throws Exception {
+        this.attempt(image, compressFormat, maxQuality, maxBytes);
+        if (this.isFit || compressFormat == Bitmap.CompressFormat.PNG) {
+            // PNG ignores quality, only a downscale can make it smaller
+            return;
+        }
+
+        int sizeAttemptCount = 1;
+        int lowQuality = MIN_QUALITY;
+        int highQuality = maxQuality - 1;
+        while (lowQuality <= highQuality && sizeAttemptCount < maxAttempts) {
+            final int middleQuality = (lowQuality + highQuality) >>> 1;
+            sizeAttemptCount++;
+            if (this.attempt(image, compressFormat, middleQuality, maxBytes)) {
+                lowQuality = middleQuality + 1;
+            } else {
+                highQuality = middleQuality - 1;
+            }
+        }
+    }
+
+    /**
+     * Keeps the attempt when it is the best fit so far, or the smallest one while nothing fits.
+     */
+    private boolean attempt(final Bitmap image, final Bitmap.CompressFormat compressFormat, final int attemptQuality, final long maxBytes) throws Exception {
+        this.attemptBuffer.reset();
+        if (image.compress(compressFormat, attemptQuality, this.attemptBuffer) == false) {
+            throw new Exception("An error occurred during image compression.");
+        }
+        this.attemptCount++;
+
+        final boolean isAttemptFit = this.attemptBuffer.size() <= maxBytes;
+        final boolean isBetter = isAttemptFit
+                ? (this.isFit == false || attemptQuality > this.quality)
+                : (this.isFit == false && (this.quality < 0 || this.attemptBuffer.size() < this.resultBuffer.size()));
+
+        if (isBetter) {
+            ByteArrayOutputStream swapBuffer = this.resultBuffer;
+            this.resultBuffer = this.attemptBuffer;
+            this.attemptBuffer = swapBuffer;
+
+            this.quality = attemptQuality;
+            this.isFit = isAttemptFit;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+        }
+
+        return isAttemptFit;
+    }
+}
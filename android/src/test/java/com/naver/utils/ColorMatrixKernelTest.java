@@ -0,0 +1,148 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+
+package com.naver.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColorMatrixKernelTest {
+
+    // several stripes of ColorMatrixKernel.STRIPE_PIXELS, with a partial last one
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 719;
+
+    @Test
+    public void sameOutputForEveryThreadCount() {
+        final float[][] matrices = {ColorMatrixKernel.sepia(), ColorMatrixKernel.saturation(0.3f), randomMatrix(new Random(7))};
+        for (float[] matrix : matrices) {
+            final int[] source = randomPixels(WIDTH * HEIGHT, new Random(11));
+            final int[] expected = applyWithThreads(matrix, source, 1);
+            for (int threadCount = 2; threadCount <= 8; threadCount *= 2) {
+                assertArrayEquals(expected, applyWithThreads(matrix, source, threadCount));
+            }
+        }
+    }
+
+    @Test
+    public void stripesMatchWholeArray() {
+        final float[] matrix = ColorMatrixKernel.contrast(1.4f);
+        final int[] source = randomPixels(WIDTH * HEIGHT, new Random(13));
+
+        final int[] expected = source.clone();
+        new ColorMatrixKernel(matrix).apply(expected, 0, expected.length);
+
+        assertArrayEquals(expected, applyWithThreads(matrix, source, 3));
+    }
+
+    @Test
+    public void matchesFloatReference() {
+        final Random random = new Random(17);
+        final float[][] matrices = {
+                ColorMatrixKernel.sepia(),
+                ColorMatrixKernel.brightness(0.25f),
+                ColorMatrixKernel.brightness(-0.5f),
+                ColorMatrixKernel.contrast(0.5f),
+                ColorMatrixKernel.contrast(2.0f),
+                ColorMatrixKernel.saturation(0.0f),
+                ColorMatrixKernel.saturation(1.8f),
+                randomMatrix(random),
+                randomMatrix(random),
+        };
+
+        for (float[] matrix : matrices) {
+            final int[] source = randomPixels(64 * 1024, random);
+            final int[] actual = source.clone();
+            new ColorMatrixKernel(matrix).apply(actual, 0, actual.length);
+
+            for (int i = 0; i < source.length; i++) {
+                final int expected = applyReference(matrix, source[i]);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int difference = Math.abs(((expected >>> shift) & 0xFF) - ((actual[i] >>> shift) & 0xFF));
+                    assertTrue("pixel " + Integer.toHexString(source[i]) + " differs by " + difference, difference <= 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void identityKeepsPixels() {
+        final float[] identity = ColorMatrixKernel.brightness(0);
+        final int[] source = randomPixels(4096, new Random(19));
+        final int[] actual = source.clone();
+        new ColorMatrixKernel(identity).apply(actual, 0, actual.length);
+        assertArrayEquals(source, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortMatrix() {
+        new ColorMatrixKernel(new float[19]);
+    }
+
+    private static int[] applyWithThreads(final float[] matrix, final int[] source, final int threadCount) {
+        final int[] pixels = source.clone();
+        final ForkJoinPool pool = new ForkJoinPool(threadCount);
+        try {
+            new ColorMatrixKernel(matrix).apply(pixels, WIDTH, HEIGHT, pool);
+        } finally {
+            pool.shutdown();
+        }
+        return pixels;
+    }
+
+    /**
+     * android.graphics.ColorMatrix semantics on unpremultiplied channels, in float.
+     */
+    private static int applyReference(final float[] m, final int color) {
+        final float[] in = {(color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF, color >>> 24};
+        final int[] out = new int[4];
+        for (int row = 0; row < 4; row++) {
+            final float value = m[row * 5] * in[0] + m[row * 5 + 1] * in[1] + m[row * 5 + 2] * in[2]
+                    + m[row * 5 + 3] * in[3] + m[row * 5 + 4];
+            out[row] = Math.max(0, Math.min(255, Math.round(value)));
+        }
+        return (out[3] << 24) | (out[0] << 16) | (out[1] << 8) | out[2];
+    }
+
+    private static int[] randomPixels(final int count, final Random random) {
+        final int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static float[] randomMatrix(final Random random) {
+        final float[] matrix = new float[20];
+        for (int i = 0; i < 20; i++) {
+            matrix[i] = (i % 5 == 4) ? (random.nextFloat() - 0.5f) * 128.0f : (random.nextFloat() - 0.3f) * 1.5f;
+        }
+        return matrix;
+    }
+}
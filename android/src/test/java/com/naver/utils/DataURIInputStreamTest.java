@@ -0,0 +1,208 @@
+/**
+ * react-native-image-modifier
+ * Copyright (c) 2019-present NAVER Corp.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all 
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR 
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, 
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER 
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, 
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+ */
+
+
+package com.naver.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataURIInputStreamTest {
+
+    private static final String HEADER = "data:image/png;base64,";
+
+    @Test
+    public void matchesBase64DecodeForEveryPaddingLength() throws Exception {
+        final Random random = new Random(3);
+        for (int length = 0; length < 64; length++) {
+            final byte[] expected = randomBytes(length, random);
+            final String encoded = Base64.getEncoder().encodeToString(expected);
+
+            assertArrayEquals(expected, decode(HEADER + encoded));
+            // without padding
+            assertArrayEquals(expected, decode(HEADER + encoded.replace("=", "")));
+        }
+    }
+
+    @Test
+    public void matchesBase64DecodeForLargePayload() throws Exception {
+        final byte[] expected = randomBytes(1024 * 1024 + 1, new Random(5));
+        final String encoded = Base64.getEncoder().encodeToString(expected);
+
+        assertArrayEquals(Base64.getDecoder().decode(encoded), decode(HEADER + encoded));
+    }
+
+    @Test
+    public void skipsWhitespace() throws Exception {
+        final byte[] expected = randomBytes(3000, new Random(7));
+        // line breaks every 76 characters, like android.util.Base64.DEFAULT
+        final String encoded = Base64.getMimeEncoder().encodeToString(expected);
+
+        assertArrayEquals(expected, decode(HEADER + encoded + "\n"));
+        assertArrayEquals(expected, decode(HEADER + encoded.replace("\r\n", " \t")));
+    }
+
+    @Test
+    public void acceptsUrlSafeAlphabetAndPercentEscapes() throws Exception {
+        final byte[] expected = randomBytes(3000, new Random(11));
+
+        assertArrayEquals(expected, decode(HEADER + Base64.getUrlEncoder().encodeToString(expected)));
+        assertArrayEquals(expected, decode(HEADER + Base64.getEncoder().encodeToString(expected)
+                .replace("+", "%2B").replace("/", "%2f").replace("=", "%3D")));
+    }
+
+    @Test
+    public void markAndResetReplayTheSameBytes() throws Exception {
+        final byte[] expected = randomBytes(1000, new Random(13));
+        final String dataURI = HEADER + Base64.getEncoder().encodeToString(expected);
+
+        try (InputStream inputStream = open(dataURI)) {
+            assertTrue(inputStream.markSupported());
+
+            // an odd offset, so the mark falls inside a base64 quantum
+            final byte[] head = readFully(inputStream, 101);
+            inputStream.mark(Integer.MAX_VALUE);
+            final byte[] first = readFully(inputStream, 500);
+            inputStream.reset();
+            final byte[] second = readFully(inputStream, 500);
+
+            assertArrayEquals(Arrays.copyOfRange(expected, 0, 101), head);
+            assertArrayEquals(Arrays.copyOfRange(expected, 101, 601), first);
+            assertArrayEquals(first, second);
+            assertArrayEquals(Arrays.copyOfRange(expected, 601, 1000), readAll(inputStream));
+        }
+    }
+
+    @Test
+    public void truncatedPayloadEndsWithTheCompleteBytes() throws Exception {
+        final byte[] expected = randomBytes(300, new Random(17));
+        final String encoded = Base64.getEncoder().encodeToString(expected);
+
+        for (int cut = 1; cut < 4; cut++) {
+            final String truncated = encoded.substring(0, encoded.length() - cut);
+            final byte[] actual = decode(HEADER + truncated);
+            assertEquals(truncated.length() * 6 / 8, actual.length);
+            assertArrayEquals(Arrays.copyOfRange(expected, 0, actual.length), actual);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsInvalidCharacter() throws Exception {
+        decode(HEADER + "AAAA*AAA");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsIncompletePercentEscape() throws Exception {
+        decode(HEADER + "AAAA%2");
+    }
+
+    @Test
+    public void decodedLengthOfPaddedPayload() {
+        for (int length = 0; length < 16; length++) {
+            final String dataURI = HEADER + Base64.getEncoder().encodeToString(new byte[length]);
+            assertEquals(length, DataURIInputStream.getDecodedLength(dataURI, HEADER.length(), dataURI.length()));
+        }
+    }
+
+    @Test
+    public void decodeAllocatesOnlyTheReadBuffer() throws Exception {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)threadBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        final String dataURI = HEADER + Base64.getEncoder().encodeToString(randomBytes(4 * 1024 * 1024, new Random(19)));
+        final byte[] buffer = new byte[16 * 1024];
+        // warms up the class and the read loop, so the measure below only sees the decode
+        drain(open(dataURI), buffer);
+
+        final long threadId = Thread.currentThread().getId();
+        final long before = allocationBean.getThreadAllocatedBytes(threadId);
+        final long decodedLength = drain(open(dataURI), buffer);
+        final long allocatedBytes = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(4 * 1024 * 1024, decodedLength);
+        // a substring or a decoded array of the payload would be several megabytes
+        assertTrue("allocated " + allocatedBytes + " bytes", allocatedBytes < 64 * 1024);
+    }
+
+    private static InputStream open(final String dataURI) {
+        return new DataURIInputStream(dataURI, dataURI.indexOf(',') + 1, dataURI.length());
+    }
+
+    private static byte[] decode(final String dataURI) throws IOException {
+        try (InputStream inputStream = open(dataURI)) {
+            return readAll(inputStream);
+        }
+    }
+
+    private static long drain(final InputStream inputStream, final byte[] buffer) throws IOException {
+        long total = 0;
+        int count;
+        while ((count = inputStream.read(buffer, 0, buffer.length)) != -1) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static byte[] readAll(final InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[777];
+        int count;
+        while ((count = inputStream.read(buffer, 0, buffer.length)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] readFully(final InputStream inputStream, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            final int count = inputStream.read(bytes, offset, length - offset);
+            if (count == -1) {
+                throw new IOException("unexpected end of stream.");
+            }
+            offset += count;
+        }
+        return bytes;
+    }
+
+    private static byte[] randomBytes(final int length, final Random random) {
+        final byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -19,7 +19,7 @@
 // OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
 // SOFTWARE.
 
-import { NativeModules, Platform } from 'react-native'
+import { DeviceEventEmitter, NativeModules, Platform } from 'react-native'
 
 var { RNImageModifier } = NativeModules;
 
@@ -45,9 +45,13 @@ class ImageModifier {
                   }
             });
         } else if (Platform.OS === "android") {
-            return new Promise((resolve) => {
-                RNImageModifier.imageModifier(param, resolve);
-            }).catch(function (err) {
+            return RNImageModifier.imageModifierAsync(param).catch(function (err) {
+                    if (err && err.code === "E_QUEUE_FULL") {
+                        return {
+                            success: false,
+                            errorMsg: err.message
+                        }
+                    }
                     return {
                         success: false,
                         errorMsg: "check your android native module setting. ("+err+")"
@@ -61,6 +65,205 @@ class ImageModifier {
         }
     }
 
+    // android only, cancels the request with the given param.jobId
+    static cancel(jobId) {
+        return ImageModifier.callAndroidModule('cancel', jobId)
+    }
+
+    // android only, callback style version of modify
+    static modifyWithCallback(param, callback) {
+        ImageModifier.paramValidate(param)
+
+        RNImageModifier.imageModifier(param, callback)
+    }
+
+    // android only, results are returned in the order of params
+    static modifyBatch(params, options = {}) {
+        params.forEach((param) => ImageModifier.paramValidate(param))
+
+        if (Platform.OS !== "android") {
+            return Promise.resolve(params.map(() => ({
+                success: false,
+                errorMsg: "not yet supported.("+Platform.OS+")"
+            })))
+        }
+
+        return RNImageModifier.imageModifierBatch(params, options).catch(function (err) {
+                return params.map(() => ({
+                    success: false,
+                    errorMsg: "check your android native module setting. ("+err+")"
+                }))
+        });
+    }
+
+    // android only, renders the params into the result cache at a low priority
+    static prefetch(params, options = {}) {
+        params.forEach((param) => ImageModifier.paramValidate(param))
+
+        if (Platform.OS !== "android") {
+            return Promise.resolve({
+                success: false,
+                errorMsg: "not yet supported.("+Platform.OS+")"
+            })
+        }
+
+        return RNImageModifier.prefetch(params, options).catch(function (err) {
+                return {
+                    success: false,
+                    errorMsg: "check your android native module setting. ("+err+")"
+                }
+        });
+    }
+
+    // android only, whether the result of the param is in the result cache
+    static isCached(param) {
+        ImageModifier.paramValidate(param)
+
+        return ImageModifier.callAndroidModule('isCached', param)
+    }
+
+    // android only, reads only the image headers
+    static getImageInfo(paths, options = {}) {
+        if (Platform.OS !== "android") {
+            return Promise.resolve(paths.map(() => ({
+                success: false,
+                errorMsg: "not yet supported.("+Platform.OS+")"
+            })))
+        }
+
+        return RNImageModifier.getImageInfo(paths, options).catch(function (err) {
+                return paths.map(() => ({
+                    success: false,
+                    errorMsg: "check your android native module setting. ("+err+")"
+                }))
+        });
+    }
+
+    // android only, the encoded image arrives as base64 chunks through onChunk(data, index)
+    // instead of one base64String, the chunks concatenate to the whole base64 text
+    static modifyChunked(param, onChunk) {
+        if (Platform.OS !== "android") {
+            return Promise.resolve({
+                success: false,
+                errorMsg: "not yet supported.("+Platform.OS+")"
+            })
+        }
+
+        const requestId = param.requestId || ('chunk-' + Date.now() + '-' + (ImageModifier.chunkRequestCount++))
+        const subscription = DeviceEventEmitter.addListener('RNImageModifierChunk', (event) => {
+            if (event.requestId === requestId) {
+                onChunk(event.data, event.index)
+            }
+        })
+
+        return ImageModifier.modify({ ...param, base64: true, chunked: true, requestId })
+            .then((response) => {
+                subscription.remove()
+                return response
+            })
+    }
+
+    // listener receives { batchId, index, completed, total, success }
+    static addBatchProgressListener(listener) {
+        return DeviceEventEmitter.addListener('RNImageModifierBatchProgress', listener)
+    }
+
+    static configureWorkerPool(options) {
+        return ImageModifier.callAndroidModule('configureWorkerPool', options)
+    }
+
+    static configureTiledMode(options) {
+        return ImageModifier.callAndroidModule('configureTiledMode', options)
+    }
+
+    static configureFilterEngine(options) {
+        return ImageModifier.callAndroidModule('configureFilterEngine', options)
+    }
+
+    static configureMemoryGovernor(options) {
+        return ImageModifier.callAndroidModule('configureMemoryGovernor', options)
+    }
+
+    static getMemoryReservations() {
+        return ImageModifier.callAndroidModule('getMemoryReservations')
+    }
+
+    static getOutputStoreStats() {
+        return ImageModifier.callAndroidModule('getOutputStoreStats')
+    }
+
+    static configureOutputStore(options) {
+        return ImageModifier.callAndroidModule('configureOutputStore', options)
+    }
+
+    // file uri of the results which are not needed anymore
+    static releaseFiles(uris) {
+        return ImageModifier.callAndroidModule('releaseFiles', uris)
+    }
+
+    static clearOutputStore() {
+        return ImageModifier.callAndroidModule('clearOutputStore')
+    }
+
+    static getResultCacheStats() {
+        return ImageModifier.callAndroidModule('getResultCacheStats')
+    }
+
+    static configureResultCache(options) {
+        return ImageModifier.callAndroidModule('configureResultCache', options)
+    }
+
+    // without a path, the whole result cache is removed
+    static invalidateResultCache(path = null) {
+        return ImageModifier.callAndroidModule('invalidateResultCache', path)
+    }
+
+    static getSourceCacheStats() {
+        return ImageModifier.callAndroidModule('getSourceCacheStats')
+    }
+
+    static clearSourceCache() {
+        return ImageModifier.callAndroidModule('clearSourceCache')
+    }
+
+    static getBitmapPoolStats() {
+        return ImageModifier.callAndroidModule('getBitmapPoolStats')
+    }
+
+    static trimBitmapPool(ratio) {
+        return ImageModifier.callAndroidModule('trimBitmapPool', ratio)
+    }
+
+    static clearBitmapPool() {
+        return ImageModifier.callAndroidModule('clearBitmapPool')
+    }
+
+    static getMetrics() {
+        return ImageModifier.callAndroidModule('getMetrics')
+    }
+
+    static resetMetrics() {
+        return ImageModifier.callAndroidModule('resetMetrics')
+    }
+
+    static callAndroidModule(methodName, ...args) {
+        if (Platform.OS !== "android") {
+            return Promise.resolve({
+                success: false,
+                errorMsg: "not yet supported.("+Platform.OS+")"
+            })
+        }
+
+        return new Promise((resolve) => {
+            RNImageModifier[methodName](...args, resolve);
+        }).catch(function (err) {
+                return {
+                    success: false,
+                    errorMsg: "check your android native module setting. ("+err+")"
+                }
+        });
+    }
+
     static paramValidate(param) {
         if (param.hasOwnProperty('grayscale')) {
             param.grayscale = param.grayscale.toString().toLowerCase();
@@ -99,4 +302,6 @@ class ImageModifier {
     }
 }
 
+ImageModifier.chunkRequestCount = 0;
+
 export default ImageModifier;